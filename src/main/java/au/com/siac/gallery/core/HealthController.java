@@ -1,5 +1,6 @@
 package au.com.siac.gallery.core;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,6 +10,9 @@ import java.util.Map;
 
 @Controller
 public class HealthController {
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
     
     /**
      * Heartbeat endpoint to keep session alive
@@ -22,4 +26,13 @@ public class HealthController {
             "timestamp", System.currentTimeMillis()
         ));
     }
+
+    /**
+     * Latency, error and retry counters for outbound calls (Open-Meteo)
+     */
+    @GetMapping("/api/upstream/metrics")
+    @ResponseBody
+    public ResponseEntity<?> upstreamMetrics() {
+        return ResponseEntity.ok(upstreamHttpClient.getMetrics());
+    }
 }
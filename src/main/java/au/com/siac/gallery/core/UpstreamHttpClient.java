@@ -0,0 +1,286 @@
+package au.com.siac.gallery.core;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared client for outbound HTTP calls (Open-Meteo weather and geocoding)
+ *
+ * One JDK HttpClient for the whole app, so keep-alive connections are pooled
+ * and reused instead of a new connection per request. Every call has a
+ * connect and a read timeout, so a slow upstream can't hold a Tomcat thread
+ * forever. GET/HEAD calls that fail with an I/O error, 429 or 5xx are retried
+ * up to upstream.http.max-retries times with jittered exponential backoff.
+ * At most upstream.http.max-per-host calls run against one host at once;
+ * further callers wait up to the read timeout for a slot, then fail.
+ *
+ * The settings are plain constructor arguments and the weather URLs are
+ * properties, so the client can be pointed at a local stub server.
+ */
+@Service
+public class UpstreamHttpClient implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamHttpClient.class);
+
+    // Upper bound for one backoff sleep
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    /**
+     * Counters for one upstream host
+     */
+    private static final class HostStats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private void record(long millis, boolean failed) {
+            requests.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long count = requests.get();
+            map.put("requests", count);
+            map.put("failures", failures.get());
+            map.put("retries", retries.get());
+            map.put("rejected", rejected.get());
+            map.put("in_flight", inFlight.get());
+            map.put("average_ms", count > 0 ? totalMillis.get() / count : 0);
+            map.put("max_ms", maxMillis.get());
+            return map;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Duration readTimeout;
+    private final int maxRetries;
+    private final long retryBaseMillis;
+    private final int maxPerHost;
+
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HostStats> hostStats = new ConcurrentHashMap<>();
+
+    public UpstreamHttpClient(
+            @Value("${upstream.http.connect-timeout-ms:3000}") long connectTimeoutMillis,
+            @Value("${upstream.http.read-timeout-ms:10000}") long readTimeoutMillis,
+            @Value("${upstream.http.max-retries:2}") int maxRetries,
+            @Value("${upstream.http.retry-base-delay-ms:250}") long retryBaseMillis,
+            @Value("${upstream.http.max-per-host:4}") int maxPerHost) {
+        this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBaseMillis = Math.max(1, retryBaseMillis);
+        this.maxPerHost = Math.max(1, maxPerHost);
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.restTemplate.getInterceptors().add(this);
+        logger.info("Upstream HTTP client: connect {}ms, read {}ms, {} retries, {} per host",
+                connectTimeoutMillis, readTimeoutMillis, this.maxRetries, this.maxPerHost);
+    }
+
+    /**
+     * GET url and convert the JSON body; throws RestClientException on failure
+     */
+    public <T> T getForObject(String url, Class<T> responseType) {
+        return restTemplate.getForObject(url, responseType);
+    }
+
+    /**
+     * The underlying RestTemplate, for calls getForObject doesn't cover
+     */
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        String host = request.getURI().getHost();
+        HostStats stats = hostStats.computeIfAbsent(host, h -> new HostStats());
+        Semaphore permits = hostPermits.computeIfAbsent(host, h -> new Semaphore(maxPerHost));
+        boolean retryable = request.getMethod() == HttpMethod.GET || request.getMethod() == HttpMethod.HEAD;
+
+        for (int attempt = 0; ; attempt++) {
+            acquire(permits, stats, host);
+            stats.inFlight.incrementAndGet();
+            Runnable release = () -> {
+                stats.inFlight.decrementAndGet();
+                permits.release();
+            };
+            long start = System.nanoTime();
+            ClientHttpResponse response = null;
+            HttpStatusCode status;
+            try {
+                // The permit is held until the body has been read and the response closed
+                response = new PermitReleasingResponse(execution.execute(request, body), release);
+                status = response.getStatusCode();
+            } catch (IOException e) {
+                if (response != null) {
+                    response.close();
+                } else {
+                    release.run();
+                }
+                stats.record(elapsedMillis(start), true);
+                if (!retryable || attempt >= maxRetries) {
+                    throw e;
+                }
+                logger.debug("{} {} failed ({}), retrying", request.getMethod(), host, e.getMessage());
+                backoff(attempt, stats);
+                continue;
+            }
+
+            boolean failed = status.is5xxServerError() || status.value() == 429;
+            stats.record(elapsedMillis(start), failed);
+            if (failed && retryable && attempt < maxRetries) {
+                // Frees the connection and the permit before sleeping
+                response.close();
+                logger.debug("{} {} answered {}, retrying", request.getMethod(), host, status.value());
+                backoff(attempt, stats);
+                continue;
+            }
+            return response;
+        }
+    }
+
+    private void acquire(Semaphore permits, HostStats stats, String host) throws IOException {
+        try {
+            if (!permits.tryAcquire(readTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                stats.rejected.incrementAndGet();
+                throw new IOException("Too many concurrent requests to " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection slot to " + host);
+        }
+    }
+
+    /**
+     * Full jitter: sleep a random time up to base * 2^attempt
+     */
+    private void backoff(int attempt, HostStats stats) throws IOException {
+        stats.retries.incrementAndGet();
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, retryBaseMillis << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Per-host latency, error and retry counters for monitoring
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> hosts = new TreeMap<>();
+        hostStats.forEach((host, stats) -> hosts.put(host, stats.toMap()));
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("max_per_host", maxPerHost);
+        metrics.put("max_retries", maxRetries);
+        metrics.put("read_timeout_ms", readTimeout.toMillis());
+        metrics.put("hosts", hosts);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a callback once when the response is closed
+     */
+    private static final class PermitReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private PermitReleasingResponse(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
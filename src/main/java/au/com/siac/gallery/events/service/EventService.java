@@ -2,6 +2,7 @@ package au.com.siac.gallery.events.service;
 
 import au.com.siac.gallery.events.entity.Event;
 import au.com.siac.gallery.events.repository.EventRepository;
+import au.com.siac.gallery.notification.service.NotificationScheduler;
 import au.com.siac.gallery.slideshow.service.SlideshowConfigurationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,9 @@ public class EventService {
     @Autowired
     private SlideshowConfigurationService slideshowConfigService;
     
+    @Autowired
+    private NotificationScheduler notificationScheduler;
+    
     /**
      * Populate slideshow config flag for a single event
      */
@@ -156,7 +160,9 @@ public class EventService {
             event.setEventEndDatetime(event.getEventStartDatetime());
         }
         
-        return eventRepository.save(event);
+        Event saved = eventRepository.save(event);
+        notificationScheduler.schedule(saved);
+        return saved;
     }
     
     /**
@@ -204,7 +210,9 @@ public class EventService {
             existing.setCompleted(updatedEvent.getCompleted());
         }
         
-        return eventRepository.save(existing);
+        Event saved = eventRepository.save(existing);
+        notificationScheduler.schedule(saved);
+        return saved;
     }
     
     /**
@@ -215,6 +223,7 @@ public class EventService {
         Event event = eventRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Event not found with id: " + id));
         eventRepository.delete(event);
+        notificationScheduler.cancel(id);
     }
     
     /**
@@ -225,7 +234,9 @@ public class EventService {
         Event event = eventRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Event not found with id: " + id));
         event.setCompleted(true);
-        return eventRepository.save(event);
+        Event saved = eventRepository.save(event);
+        notificationScheduler.schedule(saved);
+        return saved;
     }
     
     /**
@@ -236,7 +247,9 @@ public class EventService {
         Event event = eventRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Event not found with id: " + id));
         event.setCompleted(false);
-        return eventRepository.save(event);
+        Event saved = eventRepository.save(event);
+        notificationScheduler.schedule(saved);
+        return saved;
     }
     
     /**
@@ -0,0 +1,184 @@
+package au.com.siac.gallery.media.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of file attributes (exists, size, mtime, content type) for
+ * the request paths that serve media: /images/**, /music/** and
+ * /api/videos/**. On an SMB/NFS mount every stat is a network round trip, so
+ * a slideshow looping over the same files should not repeat them.
+ *
+ * Entries live for media.attributes.cache.ttl-seconds (watch events rarely
+ * arrive from network shares, so the TTL is what bounds staleness). They are
+ * dropped early when the media catalog's WatchService sees a change and when
+ * the app itself writes a derivative or thumbnail. Missing files are cached
+ * too, so probing for a not-yet-rendered thumbnail is also free.
+ */
+@Service
+public class FileAttributeCache {
+
+    /**
+     * Attributes of one path at the time it was read
+     */
+    public static final class FileInfo {
+        private final boolean exists;
+        private final boolean regularFile;
+        private final long size;
+        private final long lastModified;
+        private final MediaType contentType;
+        private final long loadedAt;
+
+        private FileInfo(boolean exists, boolean regularFile, long size, long lastModified,
+                         MediaType contentType, long loadedAt) {
+            this.exists = exists;
+            this.regularFile = regularFile;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean exists() {
+            return exists;
+        }
+
+        public boolean isRegularFile() {
+            return regularFile;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Last-modified time in millis
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Guessed from the file name; application/octet-stream when unknown
+         */
+        public MediaType getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Strong validator from size and mtime, e.g. "1f3a2-18c2b7d4e10"
+         */
+        public String getETag() {
+            return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    // Access-ordered, so the least recently served path is evicted first
+    private final LinkedHashMap<Path, FileInfo> entries;
+
+    public FileAttributeCache(@Value("${media.attributes.cache.ttl-seconds:30}") long ttlSeconds,
+                              @Value("${media.attributes.cache.max-entries:20000}") int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, FileInfo> eldest) {
+                return size() > FileAttributeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Attributes for a path, from the cache when fresh; never null
+     */
+    public FileInfo get(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        long now = System.nanoTime();
+
+        synchronized (entries) {
+            FileInfo cached = entries.get(key);
+            if (cached != null && now - cached.loadedAt < ttlNanos) {
+                return cached;
+            }
+        }
+
+        // Stat outside the lock; a concurrent miss on the same path just reads twice
+        FileInfo loaded = load(key, now);
+        put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Re-read a path now, bypassing the cache (after the app wrote or deleted it)
+     */
+    public FileInfo refresh(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        FileInfo loaded = load(key, System.nanoTime());
+        put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Forget one path (changed outside the app)
+     */
+    public void invalidate(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Forget a path and everything below it (a folder was removed or renamed)
+     */
+    public void invalidateTree(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        synchronized (entries) {
+            entries.keySet().removeIf(cached -> cached.startsWith(key));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void put(Path key, FileInfo loaded) {
+        if (ttlNanos == 0) {
+            return;
+        }
+        synchronized (entries) {
+            // A slow read that started before a refresh must not overwrite it
+            entries.merge(key, loaded, (current, candidate) ->
+                    candidate.loadedAt - current.loadedAt >= 0 ? candidate : current);
+        }
+    }
+
+    private static FileInfo load(Path path, long now) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return new FileInfo(false, false, 0, 0, null, now);
+        }
+        Path fileName = path.getFileName();
+        MediaType contentType = fileName == null ? MediaType.APPLICATION_OCTET_STREAM
+                : MediaTypeFactory.getMediaType(fileName.toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return new FileInfo(true, attributes.isRegularFile(), attributes.size(),
+                attributes.lastModifiedTime().toMillis(), contentType, now);
+    }
+}
@@ -0,0 +1,235 @@
+package au.com.siac.gallery.media.service;
+
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import au.com.siac.gallery.media.util.ImageDecoder;
+import au.com.siac.gallery.media.util.ImageScaler;
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves downscaled copies of originals for display-sized requests
+ * (/images/**?w=1920&q=85). A derivative is rendered on first request and
+ * persisted under .thumbnails/w<width>q<quality>/, then served from disk
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private static final int MIN_QUALITY = 40;
+    private static final int MAX_QUALITY = 95;
+
+    @Value("${image.folder}")
+    private String imageFolder;
+
+    @Value("${media.derivatives.widths:640,1280,1920,2560,3840}")
+    private String derivativeWidths;
+
+    @Value("${media.derivatives.default-quality:85}")
+    private int defaultQuality;
+
+    private final MediaTypeClassifier mediaTypeClassifier;
+    private final FileAttributeCache fileAttributeCache;
+
+    private Path thumbnailsRoot;
+    private int[] widths;
+
+    // One render per derivative at a time; other requests wait for it
+    private final Map<Path, Object> renderLocks = new ConcurrentHashMap<>();
+
+    // Originals already no wider than the requested width -> original mtime
+    // Access-ordered and bounded like FileAttributeCache; an evicted entry only costs a header read
+    private final Map<Path, Long> passThrough;
+
+    public ImageDerivativeService(MediaTypeClassifier mediaTypeClassifier, FileAttributeCache fileAttributeCache,
+                                  @Value("${media.derivatives.pass-through.max-entries:20000}") int passThroughMaxEntries) {
+        this.mediaTypeClassifier = mediaTypeClassifier;
+        this.fileAttributeCache = fileAttributeCache;
+        int maxEntries = Math.max(1, passThroughMaxEntries);
+        this.passThrough = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Long> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        thumbnailsRoot = Paths.get(imageFolder, ".thumbnails").toAbsolutePath().normalize();
+        widths = Arrays.stream(derivativeWidths.split(","))
+                .map(String::trim)
+                .filter(w -> !w.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .filter(w -> w > 0)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * File to serve for an image requested at the given display width
+     * Falls back to the original for videos, GIFs (may be animated), images
+     * that are already small enough, or when rendering fails
+     *
+     * @param original          Absolute path of the original file
+     * @param originalModified  Last-modified time of the original (millis)
+     * @param relativePath      Path relative to image.folder
+     * @param width             Requested display width in pixels
+     * @param quality           Requested JPEG quality (0-100), null for the default
+     */
+    public Path resolve(Path original, long originalModified, String relativePath, int width, Integer quality) {
+        if (widths.length == 0 || width <= 0 || !isScalable(relativePath)) {
+            return original;
+        }
+
+        int targetWidth = snapWidth(width);
+        int targetQuality = clampQuality(quality != null ? quality : defaultQuality);
+        Path derivative = derivativePath(relativePath, targetWidth, targetQuality);
+        if (derivative == null) {
+            return original;
+        }
+
+        try {
+            if (isFresh(fileAttributeCache.get(derivative), originalModified)) {
+                return derivative;
+            }
+            Long passThroughModified = passThrough.get(derivative);
+            if (passThroughModified != null && passThroughModified == originalModified) {
+                return original;
+            }
+
+            Object lock = renderLocks.computeIfAbsent(derivative, k -> new Object());
+            synchronized (lock) {
+                try {
+                    // Another request may have rendered it while we waited
+                    if (isFresh(fileAttributeCache.refresh(derivative), originalModified)) {
+                        return derivative;
+                    }
+                    if (render(original, derivative, targetWidth, targetQuality)) {
+                        fileAttributeCache.refresh(derivative);
+                        return derivative;
+                    }
+                    passThrough.put(derivative, originalModified);
+                    return original;
+                } finally {
+                    renderLocks.remove(derivative, lock);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not create {}px derivative for {}: {}", targetWidth, relativePath, e.getMessage());
+            return original;
+        }
+    }
+
+    /**
+     * Render the derivative; returns false when the original is already small enough
+     */
+    private boolean render(Path original, Path derivative, int targetWidth, int quality) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int orientation = ImageScaler.readOrientation(original.toFile());
+
+        int[] size = readSize(original);
+        if (size != null) {
+            int displayWidth = ImageScaler.isTransposed(orientation) ? size[1] : size[0];
+            if (displayWidth <= targetWidth) {
+                return false;
+            }
+        }
+
+        // Scale in source orientation (fewer pixels to rotate), then bake orientation in
+        boolean transposed = ImageScaler.isTransposed(orientation);
+        int maxWidth = transposed ? Integer.MAX_VALUE : targetWidth;
+        int maxHeight = transposed ? targetWidth : Integer.MAX_VALUE;
+
+        // Subsampled decode keeps heap proportional to the target, not the sensor
+        BufferedImage source = ImageDecoder.decode(original, maxWidth, maxHeight);
+        BufferedImage scaled = ImageScaler.scaleToFit(source, maxWidth, maxHeight);
+        BufferedImage oriented = ImageScaler.applyOrientation(scaled, orientation);
+
+        ImageScaler.writeJpeg(oriented, derivative, quality);
+
+        logger.debug("Rendered derivative {} ({}x{}) in {}ms", thumbnailsRoot.relativize(derivative),
+                oriented.getWidth(), oriented.getHeight(), System.currentTimeMillis() - startTime);
+        return true;
+    }
+
+    /**
+     * Width and height from the image header, without decoding pixels
+     */
+    private int[] readSize(Path original) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isScalable(String relativePath) {
+        if (!mediaTypeClassifier.isImageFile(relativePath)) {
+            return false;
+        }
+        return !relativePath.regionMatches(true, relativePath.length() - 4, ".gif", 0, 4);
+    }
+
+    private Path derivativePath(String relativePath, int width, int quality) {
+        String lower = relativePath.toLowerCase();
+        String name = lower.endsWith(".jpg") || lower.endsWith(".jpeg") ? relativePath : relativePath + ".jpg";
+        Path derivative = thumbnailsRoot.resolve("w" + width + "q" + quality).resolve(name).normalize();
+
+        // Never write outside the thumbnails folder
+        return derivative.startsWith(thumbnailsRoot) ? derivative : null;
+    }
+
+    private static boolean isFresh(FileInfo derivative, long originalModified) {
+        return derivative.isRegularFile() && derivative.getLastModified() >= originalModified;
+    }
+
+    /**
+     * Round up to the nearest configured width so the cache stays small
+     */
+    private int snapWidth(int width) {
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private int clampQuality(int quality) {
+        // Round to steps of 5 so arbitrary values don't multiply cache entries
+        int rounded = Math.round(quality / 5f) * 5;
+        return Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, rounded));
+    }
+}
@@ -0,0 +1,464 @@
+package au.com.siac.gallery.media.service;
+
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Shared in-memory catalog of all media under image.folder
+ * Built once at startup and kept current with a WatchService so that
+ * folder and image listings never have to walk the tree per request
+ */
+@Service
+public class MediaCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaCatalogService.class);
+
+    @Value("${image.folder}")
+    private String imageFolder;
+
+    @Value("${media.catalog.watch.enabled:true}")
+    private boolean watchEnabled;
+
+    private Path root;
+
+    // Relative folder ("" for the root) -> sorted media file names directly inside it
+    private final TreeMap<String, String[]> mediaByFolder = new TreeMap<>();
+    private final Object lock = new Object();
+
+    // Immutable view handed out to callers, rebuilt lazily after a change
+    private volatile Catalog snapshot;
+    private long version;
+
+    private final Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private WatchService watchService;
+    private Thread catalogThread;
+    private volatile boolean running;
+
+    private final MediaTypeClassifier mediaTypeClassifier;
+    private final FileAttributeCache fileAttributeCache;
+
+    public MediaCatalogService(MediaTypeClassifier mediaTypeClassifier, FileAttributeCache fileAttributeCache) {
+        this.mediaTypeClassifier = mediaTypeClassifier;
+        this.fileAttributeCache = fileAttributeCache;
+    }
+
+    @PostConstruct
+    public void start() {
+        root = Paths.get(imageFolder);
+        running = true;
+
+        catalogThread = new Thread(this::run, "media-catalog");
+        catalogThread.setDaemon(true);
+        catalogThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+        }
+        if (catalogThread != null) {
+            catalogThread.interrupt();
+        }
+    }
+
+    /**
+     * Current catalog snapshot
+     * Blocks only until the initial scan has completed
+     */
+    public Catalog getCatalog() {
+        awaitReady();
+
+        Catalog current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (lock) {
+            if (snapshot == null) {
+                snapshot = Catalog.build(mediaByFolder, ++version, mediaTypeClassifier);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Folders (relative, '/' separated, sorted) that directly contain media
+     * The root folder itself is not included
+     */
+    public List<String> getFoldersWithMedia() {
+        List<String> folders = getCatalog().getFolders();
+        if (!folders.isEmpty() && folders.get(0).isEmpty()) {
+            return folders.subList(1, folders.size());
+        }
+        return folders;
+    }
+
+    /**
+     * Discard the in-memory index and scan the whole tree again
+     */
+    public void rebuild() {
+        long startTime = System.currentTimeMillis();
+        TreeMap<String, String[]> scanned = new TreeMap<>();
+
+        if (watchService != null) {
+            watchKeys.keySet().forEach(WatchKey::cancel);
+            watchKeys.clear();
+        }
+
+        if (Files.isDirectory(root)) {
+            try {
+                scanTree(root, scanned);
+            } catch (IOException e) {
+                logger.error("Error scanning media folder: {}", root, e);
+            }
+        } else {
+            logger.warn("Media folder does not exist: {}", root);
+        }
+
+        synchronized (lock) {
+            mediaByFolder.clear();
+            mediaByFolder.putAll(scanned);
+            snapshot = null;
+        }
+
+        long files = scanned.values().stream().mapToLong(names -> names.length).sum();
+        logger.info("Media catalog built: {} files in {} folders in {}ms",
+                files, scanned.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void run() {
+        if (watchEnabled) {
+            try {
+                watchService = root.getFileSystem().newWatchService();
+            } catch (IOException e) {
+                logger.warn("File watching unavailable, catalog will not auto-refresh: {}", e.getMessage());
+            }
+        }
+
+        try {
+            rebuild();
+        } finally {
+            ready.countDown();
+        }
+
+        if (watchService != null) {
+            watchLoop();
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            // Collect every directory touched in this burst and rescan each once
+            Set<Path> dirtyFolders = new HashSet<>();
+            Set<Path> newFolders = new HashSet<>();
+            Set<Path> removed = new HashSet<>();
+            boolean overflow = false;
+
+            while (key != null) {
+                Path folder = watchKeys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    if (folder == null) {
+                        continue;
+                    }
+
+                    Path child = folder.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                        newFolders.add(child);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        removed.add(child);
+                        fileAttributeCache.invalidateTree(child);
+                    }
+                    fileAttributeCache.invalidate(child);
+                    dirtyFolders.add(folder);
+                }
+                if (!key.reset()) {
+                    watchKeys.remove(key);
+                }
+                try {
+                    key = watchService.poll();
+                } catch (ClosedWatchServiceException e) {
+                    return;
+                }
+            }
+
+            if (overflow) {
+                logger.info("Watch events overflowed, rebuilding media catalog");
+                fileAttributeCache.invalidateAll();
+                rebuild();
+                continue;
+            }
+
+            applyChanges(dirtyFolders, newFolders, removed);
+        }
+    }
+
+    private void applyChanges(Set<Path> dirtyFolders, Set<Path> newFolders, Set<Path> removed) {
+        Map<String, String[]> rescanned = new HashMap<>();
+
+        for (Path folder : dirtyFolders) {
+            rescanned.put(relativize(folder), listMedia(folder));
+        }
+
+        for (Path folder : newFolders) {
+            if (isThumbnailFolder(folder)) {
+                continue;
+            }
+            TreeMap<String, String[]> subtree = new TreeMap<>();
+            try {
+                scanTree(folder, subtree);
+            } catch (IOException e) {
+                logger.warn("Error scanning new folder: {}", folder, e);
+            }
+            rescanned.putAll(subtree);
+        }
+
+        synchronized (lock) {
+            for (Path path : removed) {
+                // A deleted entry may have been a folder: drop it and everything below it
+                String relative = relativize(path);
+                mediaByFolder.remove(relative);
+                // '0' is the character after '/', so this range covers exactly "relative/..."
+                mediaByFolder.subMap(relative + "/", relative + "0").clear();
+            }
+            rescanned.forEach((folder, names) -> {
+                if (names.length == 0) {
+                    mediaByFolder.remove(folder);
+                } else {
+                    mediaByFolder.put(folder, names);
+                }
+            });
+            snapshot = null;
+        }
+
+        logger.debug("Media catalog updated: {} folders rescanned, {} entries removed",
+                rescanned.size(), removed.size());
+    }
+
+    private void scanTree(Path start, Map<String, String[]> into) throws IOException {
+        Map<Path, List<String>> found = new HashMap<>();
+
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && isThumbnailFolder(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                if (attrs.isRegularFile() && mediaTypeClassifier.isMediaFile(name)) {
+                    found.computeIfAbsent(file.getParent(), p -> new ArrayList<>()).add(name);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.warn("Cannot read {}: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        found.forEach((folder, names) -> {
+            String[] sorted = names.toArray(new String[0]);
+            Arrays.sort(sorted);
+            into.put(relativize(folder), sorted);
+        });
+    }
+
+    private String[] listMedia(Path folder) {
+        if (!Files.isDirectory(folder)) {
+            return new String[0];
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            return files
+                    .filter(f -> mediaTypeClassifier.isMediaFile(f.getFileName().toString()))
+                    .filter(Files::isRegularFile)
+                    .map(f -> f.getFileName().toString())
+                    .sorted()
+                    .toArray(String[]::new);
+        } catch (IOException e) {
+            logger.warn("Error listing folder: {}", folder, e);
+            return new String[0];
+        }
+    }
+
+    private void register(Path dir) {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(key, dir);
+        } catch (IOException e) {
+            logger.warn("Cannot watch folder {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void awaitReady() {
+        try {
+            if (!ready.await(5, TimeUnit.MINUTES)) {
+                logger.warn("Media catalog still scanning, serving partial results");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path).toString().replace("\\", "/");
+    }
+
+    /**
+     * Excludes both .thumbnails and thumbnails folders at any level
+     */
+    private boolean isThumbnailFolder(Path dir) {
+        Path name = dir.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String folderName = name.toString();
+        return folderName.equals(".thumbnails") || folderName.equals("thumbnails");
+    }
+
+    /**
+     * Immutable point-in-time view of the catalog
+     * Files are stored once, grouped by folder (folders sorted, files sorted
+     * within a folder), so callers can refer to them by int index
+     */
+    public static final class Catalog {
+
+        private final long version;
+        private final String[] paths;
+        private final BitSet videos;
+        private final List<String> folders;
+        private final int[] folderStart;
+        private final Map<String, Integer> folderIndex;
+
+        private Catalog(long version, String[] paths, BitSet videos,
+                        List<String> folders, int[] folderStart) {
+            this.version = version;
+            this.paths = paths;
+            this.videos = videos;
+            this.folders = folders;
+            this.folderStart = folderStart;
+            this.folderIndex = new HashMap<>(folders.size() * 2);
+            for (int i = 0; i < folders.size(); i++) {
+                folderIndex.put(folders.get(i), i);
+            }
+        }
+
+        private static Catalog build(SortedMap<String, String[]> mediaByFolder, long version,
+                                     MediaTypeClassifier classifier) {
+            int total = 0;
+            for (String[] names : mediaByFolder.values()) {
+                total += names.length;
+            }
+
+            String[] paths = new String[total];
+            BitSet videos = new BitSet(total);
+            List<String> folders = new ArrayList<>(mediaByFolder.size());
+            int[] folderStart = new int[mediaByFolder.size() + 1];
+
+            int index = 0;
+            for (Map.Entry<String, String[]> entry : mediaByFolder.entrySet()) {
+                String folder = entry.getKey();
+                folderStart[folders.size()] = index;
+                folders.add(folder);
+
+                String prefix = folder.isEmpty() ? "" : folder + "/";
+                for (String name : entry.getValue()) {
+                    if (classifier.isVideoFile(name)) {
+                        videos.set(index);
+                    }
+                    paths[index++] = prefix + name;
+                }
+            }
+            folderStart[folders.size()] = index;
+
+            return new Catalog(version, paths, videos, Collections.unmodifiableList(folders), folderStart);
+        }
+
+        public long getVersion() { return version; }
+
+        public int size() { return paths.length; }
+
+        public String getPath(int index) { return paths[index]; }
+
+        public boolean isVideo(int index) { return videos.get(index); }
+
+        /**
+         * All folders with media, including "" for files directly in the root
+         */
+        public List<String> getFolders() { return folders; }
+
+        /**
+         * Index of a folder in getFolders(), or -1 if it holds no media
+         */
+        public int indexOfFolder(String folder) {
+            if (folder == null) {
+                return -1;
+            }
+            String normalized = folder.replace("\\", "/");
+            while (normalized.endsWith("/")) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            Integer index = folderIndex.get(normalized);
+            return index != null ? index : -1;
+        }
+
+        /** First file index of the folder at folderIndex (inclusive) */
+        public int folderStart(int folderIndex) { return folderStart[folderIndex]; }
+
+        /** Last file index of the folder at folderIndex (exclusive) */
+        public int folderEnd(int folderIndex) { return folderStart[folderIndex + 1]; }
+    }
+}
@@ -0,0 +1,240 @@
+package au.com.siac.gallery.media.service;
+
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves a file with HTTP Range support (RFC 9110 section 14)
+ *
+ * - no Range: 200 with the whole file
+ * - one range (including suffix ranges, bytes=-N): 206 with Content-Range
+ * - several ranges: 206 multipart/byteranges
+ * - unsatisfiable range: 416, with the file length in Content-Range
+ * - malformed Range header: ignored, 200 (as the RFC asks)
+ * - If-Range that no longer matches the file: Range ignored, 200
+ * - open-ended range (bytes=N-): capped to media.streaming.open-range-window,
+ *   so a seeking player gets short answers instead of the rest of the file
+ *
+ * Strong ETag and Last-Modified are sent, and If-None-Match /
+ * If-Modified-Since answer 304. Nothing is logged on this path; players
+ * issue hundreds of range requests per file.
+ *
+ * Single ranges go out through Tomcat's sendfile when the connector offers
+ * it (the kernel copies file -> socket), otherwise through
+ * FileChannel.transferTo from the requested offset; nothing is read and
+ * skipped. Both close the file themselves.
+ */
+@Service
+public class MediaStreamingService {
+
+    // Tomcat request attributes (org.apache.catalina.Globals) for sendfile
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Below this a plain copy is cheaper than handing off to sendfile (Tomcat's own default)
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private final ResourceRegionHttpMessageConverter regionConverter = new ResourceRegionHttpMessageConverter();
+
+    private final long openRangeWindow;
+
+    public MediaStreamingService(@Value("${media.streaming.open-range-window:8MB}") DataSize openRangeWindow) {
+        this.openRangeWindow = Math.max(1, openRangeWindow.toBytes());
+    }
+
+    /**
+     * Write the file (or the ranges the request asks for) to the response
+     */
+    public void stream(HttpServletRequest request, HttpServletResponse response,
+                       Path file, FileInfo info, MediaType contentType) throws IOException {
+        stream(request, response, file, info, contentType, CacheControl.empty());
+    }
+
+    /**
+     * Write the file (or the ranges the request asks for) to the response
+     *
+     * @param info         Attributes of file (from FileAttributeCache; no stat here)
+     * @param cacheControl Cache-Control for 200/206/304 answers
+     */
+    public void stream(HttpServletRequest request, HttpServletResponse response,
+                       Path file, FileInfo info, MediaType contentType, CacheControl cacheControl) throws IOException {
+        long length = info.getSize();
+        long lastModified = info.getLastModified();
+        String etag = info.getETag();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String cacheControlValue = cacheControl.getHeaderValue();
+        if (cacheControlValue != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControlValue);
+        }
+
+        // Sets ETag/Last-Modified and answers 304 when the client's copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        List<HttpRange> ranges = List.of();
+        if (ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+        }
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType.toString());
+            send(request, response, file, 0, length);
+            return;
+        }
+
+        // Regions from the length we already have (toResourceRegions would stat again)
+        FileSystemResource resource = new FileSystemResource(file);
+        List<ResourceRegion> regions = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start >= length || end < start) {
+                regions = null;
+                break;
+            }
+            long count = end - start + 1;
+            if (ranges.size() == 1 && isOpenEnded(range, length)) {
+                count = Math.min(count, openRangeWindow);
+            }
+            regions.add(new ResourceRegion(resource, start, count));
+            total += count;
+        }
+        if (regions == null || total > length) {
+            // Starts past the end, or the ranges add up to more than the file
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (regions.size() == 1) {
+            ResourceRegion region = regions.get(0);
+            long start = region.getPosition();
+            long end = start + region.getCount() - 1;
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            send(request, response, file, start, region.getCount());
+            return;
+        }
+
+        // multipart/byteranges; the converter writes boundaries and part headers
+        if (isHead(request)) {
+            return;
+        }
+        regionConverter.write(regions, contentType, new ServletServerHttpResponse(response));
+    }
+
+    /**
+     * Ranges from the header, or an empty list when there is none or it can't be parsed
+     */
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Whether a Range may be applied: no If-Range, or it names the current
+     * version (strong ETag, or the exact Last-Modified date)
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        if (value.startsWith("W/")) {
+            // Weak tags never match for ranges
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * bytes=N- (no last position); suffix ranges and bytes=N-M are served as asked
+     */
+    private static boolean isOpenEnded(HttpRange range, long length) {
+        // Suffix ranges also run to the end, but their start moves with the length
+        boolean toEnd = range.getRangeEnd(Long.MAX_VALUE) == Long.MAX_VALUE - 1;
+        boolean fixedStart = range.getRangeStart(Long.MAX_VALUE) == range.getRangeStart(length);
+        return toEnd && fixedStart;
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response,
+                      Path file, long start, long count) throws IOException {
+        response.setContentLengthLong(count);
+        if (isHead(request) || count == 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat streams the file after the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;  // File shrank underneath us
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+}
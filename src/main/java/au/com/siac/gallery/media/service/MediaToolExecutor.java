@@ -0,0 +1,240 @@
+package au.com.siac.gallery.media.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs external media tools (ffmpeg, ffprobe) on a bounded worker pool
+ *
+ * At most media.tools.max-concurrent processes run at once; further jobs wait
+ * in a bounded queue, and callers block when that is full, so parallel
+ * indexing can never fork-bomb the host. Every job has a timeout after which
+ * the process (and its children) are killed. Output (stdout + stderr) is
+ * drained on a separate thread so a chatty process can't block on a full pipe.
+ */
+@Service
+public class MediaToolExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaToolExecutor.class);
+
+    // Keep at most this much tool output per job
+    private static final int MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    /**
+     * Outcome of one tool run
+     */
+    public static class Result {
+        private final int exitCode;
+        private final String output;
+        private final boolean timedOut;
+        private final long durationMillis;
+
+        Result(int exitCode, String output, boolean timedOut, long durationMillis) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.timedOut = timedOut;
+            this.durationMillis = durationMillis;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Duration defaultTimeout;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalRunMillis = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+
+    public MediaToolExecutor(
+            @Value("${media.tools.max-concurrent:0}") int maxConcurrent,
+            @Value("${media.tools.queue-capacity:64}") int queueCapacity,
+            @Value("${media.tools.timeout-seconds:60}") long timeoutSeconds) {
+        int workers = maxConcurrent > 0
+                ? maxConcurrent
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> Thread.ofPlatform()
+                        .name("media-tool-" + threadCount.incrementAndGet())
+                        .daemon(true)
+                        .unstarted(runnable),
+                // Full queue: the caller waits for a slot instead of spawning more processes
+                (runnable, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Media tool executor is shut down");
+                    }
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting for a media tool slot", e);
+                    }
+                });
+        this.defaultTimeout = Duration.ofSeconds(timeoutSeconds);
+        logger.info("Media tool executor: {} workers, queue {}, timeout {}s", workers, queueCapacity, timeoutSeconds);
+    }
+
+    /**
+     * Run a command with the default timeout and wait for it
+     */
+    public Result run(List<String> command) throws IOException, InterruptedException {
+        return run(command, defaultTimeout);
+    }
+
+    /**
+     * Run a command and wait for it; the process is killed after timeout
+     */
+    public Result run(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        try {
+            return submit(command, timeout).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Media tool failed: " + command.get(0), cause);
+        }
+    }
+
+    /**
+     * Queue a command; blocks only while the queue is full
+     */
+    public CompletableFuture<Result> submit(List<String> command, Duration timeout) {
+        submitted.incrementAndGet();
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(execute(command, timeout));
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    private Result execute(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        running.incrementAndGet();
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            process.getOutputStream().close();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Thread drain = Thread.ofVirtual().start(() -> drain(process.getInputStream(), output));
+
+            boolean finished = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (!finished) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+                process.waitFor(5, TimeUnit.SECONDS);
+                timedOut.incrementAndGet();
+                logger.warn("{} timed out after {}s and was killed: {}",
+                        command.get(0), timeout.toSeconds(), String.join(" ", command));
+            }
+            // The pipe closes when the process exits
+            drain.join(TimeUnit.SECONDS.toMillis(5));
+
+            long durationMillis = (System.nanoTime() - start) / 1_000_000;
+            totalRunMillis.addAndGet(durationMillis);
+            int exitCode = finished ? process.exitValue() : -1;
+            if (finished && exitCode != 0) {
+                failed.incrementAndGet();
+            }
+            completed.incrementAndGet();
+
+            String text;
+            synchronized (output) {
+                text = output.toString(StandardCharsets.UTF_8);
+            }
+            return new Result(exitCode, text, !finished, durationMillis);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private static void drain(InputStream input, ByteArrayOutputStream output) {
+        byte[] buffer = new byte[8192];
+        try (input) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                synchronized (output) {
+                    int room = MAX_OUTPUT_BYTES - output.size();
+                    if (room > 0) {
+                        output.write(buffer, 0, Math.min(read, room));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Process was killed or closed its output
+        }
+    }
+
+    /**
+     * Queue depth and run counters for monitoring
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long done = completed.get();
+        metrics.put("workers", executor.getMaximumPoolSize());
+        metrics.put("running", running.get());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("queue_remaining", executor.getQueue().remainingCapacity());
+        metrics.put("submitted", submitted.get());
+        metrics.put("completed", done);
+        metrics.put("failed", failed.get());
+        metrics.put("timed_out", timedOut.get());
+        metrics.put("average_ms", done > 0 ? totalRunMillis.get() / done : 0);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,250 @@
+package au.com.siac.gallery.media.service;
+
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import au.com.siac.gallery.media.util.ImageDecoder;
+import au.com.siac.gallery.media.util.ImageScaler;
+import au.com.siac.gallery.media.util.ThumbnailEncoder;
+import au.com.siac.gallery.media.util.ThumbnailEncoders;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Multi-resolution thumbnails (default 160/400/1280/2560 px, longest side)
+ * stored as .thumbnails/<size>/<relativePath>
+ *
+ * All levels come from one decode: the largest level is scaled from the
+ * decoded original and every smaller level from the level above it, so each
+ * step is a cheap halving-style reduction. Levels larger than the original
+ * are not written; requests for them get the largest level there is.
+ *
+ * Each level is written as JPEG plus any alternative formats enabled in
+ * media.thumbnails.formats (e.g. <name>.webp), chosen per request by Accept.
+ */
+@Service
+public class ThumbnailPyramidService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailPyramidService.class);
+
+    @Value("${image.folder}")
+    private String imageFolder;
+
+    @Value("${media.thumbnails.sizes:160,400,1280,2560}")
+    private String thumbnailSizes;
+
+    @Value("${memories.thumbnail-quality:85}")
+    private float thumbnailQuality;
+
+    private final ThumbnailEncoders thumbnailEncoders;
+    private final FileAttributeCache fileAttributeCache;
+
+    private Path thumbnailsRoot;
+    private int[] sizes;
+
+    public ThumbnailPyramidService(ThumbnailEncoders thumbnailEncoders, FileAttributeCache fileAttributeCache) {
+        this.thumbnailEncoders = thumbnailEncoders;
+        this.fileAttributeCache = fileAttributeCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        thumbnailsRoot = Paths.get(imageFolder, ".thumbnails").toAbsolutePath().normalize();
+        sizes = Arrays.stream(thumbnailSizes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .filter(s -> s > 0)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Path relative to image.folder for one level, e.g. .thumbnails/400/2020/a.jpg
+     */
+    public String relativeLevelPath(int size, String relativePath) {
+        return ".thumbnails/" + size + "/" + jpegName(relativePath);
+    }
+
+    /**
+     * Render every level from one decode of the source image
+     * Returns size -> relative path of the levels now on disk (fresh levels are
+     * kept as they are). The smallest level is always written
+     *
+     * @param source        Image to scale (a photo, or a video frame)
+     * @param relativePath  Path of the media file relative to image.folder
+     * @param orientation   EXIF orientation to bake in (1 = none)
+     */
+    public NavigableMap<Integer, String> generate(Path source, String relativePath, int orientation) throws IOException {
+        NavigableMap<Integer, String> levels = new TreeMap<>();
+        if (sizes.length == 0) {
+            return levels;
+        }
+
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+
+        // The smallest level is written last, so a fresh one means the set is complete
+        Path smallest = levelPath(sizes[0], relativePath);
+        if (smallest != null && isFresh(smallest, sourceModified)) {
+            for (int size : sizes) {
+                Path level = levelPath(size, relativePath);
+                if (level != null && Files.exists(level)) {
+                    levels.put(size, relativeLevelPath(size, relativePath));
+                }
+            }
+            return levels;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int largest = sizes[sizes.length - 1];
+
+        // Square box, so the orientation (applied after scaling) doesn't matter here
+        BufferedImage decoded = ImageDecoder.decode(source, largest, largest);
+        int sourceLongest = Math.max(decoded.getWidth(), decoded.getHeight());
+        BufferedImage current = ImageScaler.applyOrientation(
+                ImageScaler.scaleToFit(decoded, largest, largest), orientation);
+
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            int size = sizes[i];
+            Path level = levelPath(size, relativePath);
+            if (level == null) {
+                continue;
+            }
+            // Only levels the source actually has the pixels for (always the smallest)
+            if (size > sourceLongest && i > 0) {
+                deleteLevel(size, relativePath);
+                continue;
+            }
+            current = ImageScaler.scaleToFit(current, size, size);
+            for (ThumbnailEncoder encoder : thumbnailEncoders.getAlternatives()) {
+                Path variant = variantPath(size, relativePath, encoder);
+                try {
+                    encoder.write(current, variant, thumbnailQuality);
+                    fileAttributeCache.refresh(variant);
+                } catch (IOException e) {
+                    // JPEG still covers every client
+                    logger.warn("Could not write {} thumbnail for {}: {}", encoder.getFormat(), relativePath, e.getMessage());
+                }
+            }
+            // JPEG last: its mtime marks the level (and variants) as complete
+            thumbnailEncoders.getDefault().write(current, level, thumbnailQuality);
+            fileAttributeCache.refresh(level);
+            levels.put(size, relativeLevelPath(size, relativePath));
+        }
+
+        logger.debug("Generated {} thumbnail levels for {} in {}ms",
+                levels.size(), relativePath, System.currentTimeMillis() - startTime);
+        return levels;
+    }
+
+    /**
+     * Smallest level at least the requested size that is up to date with the
+     * original; failing that the largest fresh level below it (the original is
+     * smaller than the request, or is a video frame). Null when no level is fresh
+     * Returns the encoder's format when it was written for that level, else JPEG
+     */
+    public Path resolve(String relativePath, int size, long originalModified, ThumbnailEncoder encoder) {
+        for (int candidate : sizes) {
+            if (candidate >= size) {
+                Path level = freshLevel(candidate, relativePath, originalModified, encoder);
+                if (level != null) {
+                    return level;
+                }
+            }
+        }
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            if (sizes[i] < size) {
+                Path level = freshLevel(sizes[i], relativePath, originalModified, encoder);
+                if (level != null) {
+                    return level;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Path freshLevel(int size, String relativePath, long originalModified, ThumbnailEncoder encoder) {
+        // Attribute cache: a slideshow asking for the same levels doesn't stat them again
+        if (encoder != null && encoder != thumbnailEncoders.getDefault()) {
+            Path variant = variantPath(size, relativePath, encoder);
+            if (variant != null && isCachedFresh(variant, originalModified)) {
+                return variant;
+            }
+        }
+        Path level = levelPath(size, relativePath);
+        return level != null && isCachedFresh(level, originalModified) ? level : null;
+    }
+
+    /**
+     * Remove every level for a media file that is no longer indexed
+     */
+    public void delete(String relativePath) {
+        for (int size : sizes) {
+            deleteLevel(size, relativePath);
+        }
+    }
+
+    private void deleteLevel(int size, String relativePath) {
+        List<Path> files = new ArrayList<>();
+        files.add(levelPath(size, relativePath));
+        for (ThumbnailEncoder encoder : thumbnailEncoders.getAlternatives()) {
+            files.add(variantPath(size, relativePath, encoder));
+        }
+        for (Path file : files) {
+            try {
+                if (file != null && Files.deleteIfExists(file)) {
+                    fileAttributeCache.invalidate(file);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not delete thumbnail {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private Path levelPath(int size, String relativePath) {
+        return inThumbnails(size, jpegName(relativePath));
+    }
+
+    private Path variantPath(int size, String relativePath, ThumbnailEncoder encoder) {
+        return inThumbnails(size, relativePath + "." + encoder.getExtension());
+    }
+
+    private Path inThumbnails(int size, String name) {
+        Path level = thumbnailsRoot.resolve(String.valueOf(size)).resolve(name).normalize();
+
+        // Never write outside the thumbnails folder
+        return level.startsWith(thumbnailsRoot) ? level : null;
+    }
+
+    private boolean isFresh(Path level, long sourceModified) throws IOException {
+        try {
+            return Files.getLastModifiedTime(level).toMillis() >= sourceModified;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private boolean isCachedFresh(Path level, long sourceModified) {
+        FileInfo info = fileAttributeCache.get(level);
+        return info.isRegularFile() && info.getLastModified() >= sourceModified;
+    }
+
+    private static String jpegName(String relativePath) {
+        String lower = relativePath.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ? relativePath : relativePath + ".jpg";
+    }
+}
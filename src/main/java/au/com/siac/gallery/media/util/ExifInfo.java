@@ -0,0 +1,173 @@
+package au.com.siac.gallery.media.util;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.gif.GifHeaderDirectory;
+import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.png.PngDirectory;
+import com.drew.metadata.webp.WebpDirectory;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Everything indexing needs from an image's embedded metadata, read in one
+ * parse of the file. Fields are null when the file doesn't carry them
+ */
+public final class ExifInfo {
+
+    private static final ExifInfo EMPTY = new ExifInfo(null, null, 1, null, null, null, null);
+
+    private final LocalDate captureDate;
+    private final String cameraModel;
+    private final int orientation;
+    private final Integer width;
+    private final Integer height;
+    private final Double latitude;
+    private final Double longitude;
+
+    private ExifInfo(LocalDate captureDate, String cameraModel, int orientation,
+                     Integer width, Integer height, Double latitude, Double longitude) {
+        this.captureDate = captureDate;
+        this.cameraModel = cameraModel;
+        this.orientation = orientation;
+        this.width = width;
+        this.height = height;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Parse the file's metadata once; never throws, returns an empty result
+     * when nothing is readable
+     */
+    public static ExifInfo read(File imageFile) {
+        Metadata metadata;
+        try {
+            metadata = ImageMetadataReader.readMetadata(imageFile);
+        } catch (Exception e) {
+            // No readable metadata
+            return EMPTY;
+        }
+
+        ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        ExifSubIFDDirectory subIfd = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        GeoLocation location = readLocation(metadata.getFirstDirectoryOfType(GpsDirectory.class));
+
+        return new ExifInfo(
+                readCaptureDate(subIfd),
+                readCameraModel(ifd0),
+                readOrientation(ifd0),
+                readDimension(metadata, subIfd, true),
+                readDimension(metadata, subIfd, false),
+                location != null ? location.getLatitude() : null,
+                location != null ? location.getLongitude() : null);
+    }
+
+    private static LocalDate readCaptureDate(ExifSubIFDDirectory directory) {
+        if (directory == null || !directory.containsTag(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL)) {
+            return null;
+        }
+        Date date = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
+        if (date == null) {
+            return null;
+        }
+        return date.toInstant()
+                .atZone(ZoneId.systemDefault())
+                .toLocalDate();
+    }
+
+    private static String readCameraModel(ExifIFD0Directory directory) {
+        if (directory == null) {
+            return null;
+        }
+        String make = directory.getString(ExifIFD0Directory.TAG_MAKE);
+        String model = directory.getString(ExifIFD0Directory.TAG_MODEL);
+
+        if (make != null && model != null) {
+            return make + " " + model;
+        }
+        return model;
+    }
+
+    private static int readOrientation(ExifIFD0Directory directory) {
+        if (directory == null) {
+            return 1;
+        }
+        Integer orientation = directory.getInteger(ExifIFD0Directory.TAG_ORIENTATION);
+        return orientation != null && orientation >= 1 && orientation <= 8 ? orientation : 1;
+    }
+
+    /**
+     * Pixel size from the container header, falling back to the EXIF copy
+     */
+    private static Integer readDimension(Metadata metadata, ExifSubIFDDirectory subIfd, boolean width) {
+        Integer value = tag(metadata.getFirstDirectoryOfType(JpegDirectory.class),
+                width ? JpegDirectory.TAG_IMAGE_WIDTH : JpegDirectory.TAG_IMAGE_HEIGHT);
+        if (value == null) {
+            value = tag(metadata.getFirstDirectoryOfType(PngDirectory.class),
+                    width ? PngDirectory.TAG_IMAGE_WIDTH : PngDirectory.TAG_IMAGE_HEIGHT);
+        }
+        if (value == null) {
+            value = tag(metadata.getFirstDirectoryOfType(WebpDirectory.class),
+                    width ? WebpDirectory.TAG_IMAGE_WIDTH : WebpDirectory.TAG_IMAGE_HEIGHT);
+        }
+        if (value == null) {
+            value = tag(metadata.getFirstDirectoryOfType(GifHeaderDirectory.class),
+                    width ? GifHeaderDirectory.TAG_IMAGE_WIDTH : GifHeaderDirectory.TAG_IMAGE_HEIGHT);
+        }
+        if (value == null) {
+            value = tag(subIfd,
+                    width ? ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH : ExifSubIFDDirectory.TAG_EXIF_IMAGE_HEIGHT);
+        }
+        return value != null && value > 0 ? value : null;
+    }
+
+    private static GeoLocation readLocation(GpsDirectory directory) {
+        if (directory == null) {
+            return null;
+        }
+        GeoLocation location = directory.getGeoLocation();
+        // 0,0 is what cameras write when they had no fix
+        return location != null && !location.isZero() ? location : null;
+    }
+
+    private static Integer tag(Directory directory, int tagType) {
+        return directory != null ? directory.getInteger(tagType) : null;
+    }
+
+    public LocalDate getCaptureDate() {
+        return captureDate;
+    }
+
+    public String getCameraModel() {
+        return cameraModel;
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+}
@@ -0,0 +1,196 @@
+package au.com.siac.gallery.media.util;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Decodes an image at roughly the size it is needed, not the sensor size
+ *
+ * The file is memory-mapped and the reader subsamples rows/columns while
+ * decoding (ImageReadParam.setSourceSubsampling), keeping at least twice the
+ * target size for the final high-quality scale. A 48 MP JPEG decoded for a
+ * 400px thumbnail allocates about 800x600 pixels instead of 8000x6000.
+ * For small targets the embedded EXIF thumbnail is used when it is big enough
+ * and has the same aspect ratio as the photo
+ */
+public final class ImageDecoder {
+
+    // EXIF thumbnails are typically 160x120; never worth looking for above this
+    private static final int MAX_EMBEDDED_THUMBNAIL = 320;
+
+    // "Exif\0\0" at the start of the APP1 payload, before the TIFF header
+    private static final byte[] EXIF_ID = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int EXIF_PREAMBLE = EXIF_ID.length;
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decode an image large enough to be scaled into maxWidth x maxHeight
+     * (in stored orientation). The result may be larger than the box, never
+     * smaller unless the original is
+     */
+    public static BufferedImage decode(Path file, int maxWidth, int maxHeight) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+
+            try (ImageInputStream input = new MappedImageInputStream(mapped)) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+                if (!readers.hasNext()) {
+                    throw new IOException("No image reader for: " + file);
+                }
+
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    int width = reader.getWidth(0);
+                    int height = reader.getHeight(0);
+                    double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
+
+                    if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                        BufferedImage embedded = readEmbeddedThumbnail(mapped, width, height, ratio);
+                        if (embedded != null) {
+                            return embedded;
+                        }
+                    }
+
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    int factor = subsampling(ratio);
+                    if (factor > 1) {
+                        param.setSourceSubsampling(factor, factor, 0, 0);
+                    }
+                    return reader.read(0, param);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Largest step that still leaves at least 2x the target size
+     */
+    private static int subsampling(double ratio) {
+        if (ratio >= 0.5) {
+            return 1;
+        }
+        return Math.max(1, (int) Math.floor(1.0 / (2.0 * ratio)));
+    }
+
+    /**
+     * The EXIF thumbnail, if it covers the target and isn't letterboxed
+     */
+    private static BufferedImage readEmbeddedThumbnail(MemorySegment mapped, int width, int height, double ratio) {
+        int neededWidth = (int) Math.ceil(width * ratio);
+        int neededHeight = (int) Math.ceil(height * ratio);
+        if (Math.max(neededWidth, neededHeight) > MAX_EMBEDDED_THUMBNAIL) {
+            return null;
+        }
+
+        try {
+            MemorySegment exif = exifSegment(mapped);
+            if (exif == null) {
+                return null;
+            }
+            // The APP1 payload is "Exif\0\0" followed by the TIFF header; IFD offsets count from the header
+            Metadata metadata = new Metadata();
+            new ExifReader().extract(new ByteArrayReader(exif.toArray(ValueLayout.JAVA_BYTE)), metadata, EXIF_PREAMBLE);
+            ExifThumbnailDirectory directory = metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class);
+            if (directory == null) {
+                return null;
+            }
+            Integer offset = directory.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_OFFSET);
+            Integer length = directory.getInteger(ExifThumbnailDirectory.TAG_THUMBNAIL_LENGTH);
+            if (offset == null || length == null || offset < 0 || length < 4
+                    || EXIF_PREAMBLE + (long) offset + length > exif.byteSize()) {
+                return null;
+            }
+            MemorySegment thumbnailBytes = exif.asSlice(EXIF_PREAMBLE + (long) offset, length);
+            // Must start with a JPEG start-of-image marker
+            if ((thumbnailBytes.get(ValueLayout.JAVA_BYTE, 0) & 0xFF) != 0xFF
+                    || (thumbnailBytes.get(ValueLayout.JAVA_BYTE, 1) & 0xFF) != 0xD8) {
+                return null;
+            }
+
+            try (ImageInputStream thumbInput = new MappedImageInputStream(thumbnailBytes)) {
+                BufferedImage thumbnail = ImageIO.read(thumbInput);
+                if (thumbnail == null
+                        || thumbnail.getWidth() < neededWidth || thumbnail.getHeight() < neededHeight) {
+                    return null;
+                }
+                double photoAspect = (double) width / height;
+                double thumbAspect = (double) thumbnail.getWidth() / thumbnail.getHeight();
+                return Math.abs(photoAspect - thumbAspect) / photoAspect <= 0.02 ? thumbnail : null;
+            }
+        } catch (Exception e) {
+            // Fall back to decoding the photo
+            return null;
+        }
+    }
+
+    /**
+     * Payload of the Exif APP1 segment (after the marker and length), or null
+     * Walks the marker segments up to the start of the image data
+     */
+    private static MemorySegment exifSegment(MemorySegment mapped) {
+        long size = mapped.byteSize();
+        if (size < 4 || unsigned(mapped, 0) != 0xFF || unsigned(mapped, 1) != 0xD8) {
+            return null;
+        }
+        long position = 2;
+        while (position + 4 <= size) {
+            if (unsigned(mapped, position) != 0xFF) {
+                return null;
+            }
+            int marker = unsigned(mapped, position + 1);
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                position++;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                // Start of scan / end of image: no more metadata segments
+                return null;
+            }
+            int segmentLength = (unsigned(mapped, position + 2) << 8) | unsigned(mapped, position + 3);
+            if (segmentLength < 2 || position + 2 + segmentLength > size) {
+                return null;
+            }
+            if (marker == 0xE1 && segmentLength - 2 > EXIF_PREAMBLE && isExif(mapped, position + 4)) {
+                return mapped.asSlice(position + 4, segmentLength - 2);
+            }
+            position += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    private static boolean isExif(MemorySegment mapped, long position) {
+        for (int i = 0; i < EXIF_PREAMBLE; i++) {
+            if (unsigned(mapped, position + i) != (EXIF_ID[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int unsigned(MemorySegment segment, long position) {
+        return segment.get(ValueLayout.JAVA_BYTE, position) & 0xFF;
+    }
+}
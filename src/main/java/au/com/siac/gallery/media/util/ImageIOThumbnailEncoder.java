@@ -0,0 +1,117 @@
+package au.com.siac.gallery.media.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * ThumbnailEncoder backed by whichever ImageIO writer is registered for a MIME
+ * type. JPEG is always present in the JDK; WebP comes from the webp-imageio
+ * plugin in the build, other formats (AVIF) work once a plugin for them is
+ * on the classpath
+ */
+public final class ImageIOThumbnailEncoder implements ThumbnailEncoder {
+
+    /**
+     * Baseline JPEG, used for every thumbnail and derivative
+     */
+    public static final ImageIOThumbnailEncoder JPEG = new ImageIOThumbnailEncoder("jpeg", "image/jpeg", "jpg");
+
+    private final String format;
+    private final String mimeType;
+    private final String extension;
+
+    public ImageIOThumbnailEncoder(String format, String mimeType, String extension) {
+        this.format = format;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /**
+     * True when an ImageIO writer for this format is registered and can encode
+     * a pixel (plugins that wrap a native library, like WebP, fail here rather
+     * than on the first thumbnail when the library can't be loaded)
+     */
+    public boolean isAvailable() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(new ByteArrayOutputStream())) {
+            writer.setOutput(output);
+            writer.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            return false;
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public void write(BufferedImage image, Path target, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+        if (!writers.hasNext()) {
+            throw new IOException("No " + format + " writer found");
+        }
+
+        Path parent = target.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, ".tmp-", "." + extension);
+
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (param.getCompressionType() == null && types != null && types.length > 0) {
+                    // Plugins with several modes (e.g. lossy/lossless WebP) need one chosen
+                    param.setCompressionType(types[0]);
+                }
+                param.setCompressionQuality(quality / 100f);
+            }
+            if (param instanceof JPEGImageWriteParam jpegParam) {
+                // Optimal Huffman tables: same pixels, typically 5-10% fewer bytes
+                jpegParam.setOptimizeHuffmanTables(true);
+            }
+
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
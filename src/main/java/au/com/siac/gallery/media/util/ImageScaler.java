@@ -0,0 +1,164 @@
+package au.com.siac.gallery.media.util;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Shared helpers for producing scaled copies of images
+ * Downscaling halves repeatedly before the final bicubic pass so large
+ * reductions keep detail without aliasing
+ */
+public final class ImageScaler {
+
+    private ImageScaler() {
+    }
+
+    /**
+     * Scale an image so it fits within maxWidth x maxHeight, keeping aspect ratio
+     * Never upscales
+     */
+    public static BufferedImage scaleToFit(BufferedImage source, int maxWidth, int maxHeight) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        if (ratio >= 1.0) {
+            return toRgb(source);
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        return scale(source, targetWidth, targetHeight);
+    }
+
+    /**
+     * Scale to exact dimensions, halving step by step while more than 2x away
+     */
+    public static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+
+        if (width != targetWidth || height != targetHeight || current.getType() != BufferedImage.TYPE_INT_RGB) {
+            current = draw(current, targetWidth, targetHeight, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        return draw(source, source.getWidth(), source.getHeight(), RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    /**
+     * Read the EXIF orientation tag (1-8), 1 when absent
+     */
+    public static int readOrientation(File imageFile) {
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
+            ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (directory != null && directory.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                return directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+        } catch (Exception e) {
+            // No readable EXIF
+        }
+        return 1;
+    }
+
+    /**
+     * True when the orientation swaps width and height
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * Rotate/flip pixels so the image displays upright without its EXIF tag
+     * Re-encoded copies drop EXIF, so the orientation must be baked in
+     */
+    public static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform t = new AffineTransform();
+
+        switch (orientation) {
+            case 2: // Mirror horizontal
+                t.scale(-1, 1);
+                t.translate(-w, 0);
+                break;
+            case 3: // Rotate 180
+                t.translate(w, h);
+                t.rotate(Math.PI);
+                break;
+            case 4: // Mirror vertical
+                t.scale(1, -1);
+                t.translate(0, -h);
+                break;
+            case 5: // Transpose
+                t.rotate(-Math.PI / 2);
+                t.scale(-1, 1);
+                break;
+            case 6: // Rotate 90 CW
+                t.translate(h, 0);
+                t.rotate(Math.PI / 2);
+                break;
+            case 7: // Transverse
+                t.translate(h, w);
+                t.rotate(Math.PI / 2);
+                t.scale(-1, 1);
+                break;
+            case 8: // Rotate 270 CW
+                t.translate(0, w);
+                t.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                return image;
+        }
+
+        int outWidth = isTransposed(orientation) ? h : w;
+        int outHeight = isTransposed(orientation) ? w : h;
+        BufferedImage oriented = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = oriented.createGraphics();
+        g2d.drawImage(image, t, null);
+        g2d.dispose();
+        return oriented;
+    }
+
+    /**
+     * Write a JPEG with the given quality (0-100) via a temp file + atomic move,
+     * so concurrent readers never see a half-written file (same writer as the thumbnails)
+     */
+    public static void writeJpeg(BufferedImage image, Path target, float quality) throws IOException {
+        ImageIOThumbnailEncoder.JPEG.write(image, target, quality);
+    }
+}
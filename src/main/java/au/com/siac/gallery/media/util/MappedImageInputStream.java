@@ -0,0 +1,57 @@
+package au.com.siac.gallery.media.util;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * ImageInputStream over a memory-mapped file
+ * Image readers pull bytes straight from the page cache, so nothing the size
+ * of the file is copied onto the heap. The mapping's lifetime belongs to the
+ * caller's Arena
+ */
+final class MappedImageInputStream extends ImageInputStreamImpl {
+
+    private final MemorySegment segment;
+    private final long length;
+
+    MappedImageInputStream(MemorySegment segment) {
+        this.segment = segment;
+        this.length = segment.byteSize();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        return segment.get(ValueLayout.JAVA_BYTE, streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        int count = (int) Math.min(len, length - streamPos);
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+}
@@ -0,0 +1,134 @@
+package au.com.siac.gallery.media.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Classifies files as image, video or other by extension
+ * Shared by every scanner so the supported formats live in one place
+ * (media.image.formats / media.video.formats). Lookups are case-insensitive
+ * and allocation-free: no regex, no lower-casing, no substring
+ */
+@Component
+public class MediaTypeClassifier {
+
+    public enum MediaType {
+        IMAGE, VIDEO, OTHER
+    }
+
+    private static final class Extension {
+        private final String name;
+        private final MediaType type;
+
+        private Extension(String name, MediaType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    // Extensions bucketed by their lower-case first letter (a-z, 0-9)
+    private final Extension[][] buckets = new Extension[36][];
+    private int maxExtensionLength;
+
+    public MediaTypeClassifier(
+            @Value("${media.image.formats:png,jpg,jpeg,gif,webp}") String imageFormats,
+            @Value("${media.video.formats:mp4,mov,avi,mkv,webm,m4v,wmv}") String videoFormats) {
+        List<List<Extension>> lists = new ArrayList<>();
+        for (int i = 0; i < buckets.length; i++) {
+            lists.add(new ArrayList<>());
+        }
+
+        addFormats(imageFormats, MediaType.IMAGE, lists);
+        addFormats(videoFormats, MediaType.VIDEO, lists);
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = lists.get(i).toArray(new Extension[0]);
+        }
+    }
+
+    private void addFormats(String formats, MediaType type, List<List<Extension>> lists) {
+        for (String format : formats.split(",")) {
+            String ext = format.trim().toLowerCase(Locale.ROOT);
+            if (ext.startsWith(".")) {
+                ext = ext.substring(1);
+            }
+            int bucket = ext.isEmpty() ? -1 : bucketOf(ext.charAt(0));
+            if (bucket < 0) {
+                continue;
+            }
+            lists.get(bucket).add(new Extension(ext, type));
+            maxExtensionLength = Math.max(maxExtensionLength, ext.length());
+        }
+    }
+
+    /**
+     * Classify a file name or path by its extension
+     */
+    public MediaType classify(String filename) {
+        if (filename == null) {
+            return MediaType.OTHER;
+        }
+
+        int dot = filename.lastIndexOf('.');
+        int extLength = filename.length() - dot - 1;
+        if (dot < 0 || extLength == 0 || extLength > maxExtensionLength) {
+            return MediaType.OTHER;
+        }
+
+        int bucket = bucketOf(filename.charAt(dot + 1));
+        if (bucket < 0) {
+            return MediaType.OTHER;
+        }
+
+        for (Extension ext : buckets[bucket]) {
+            if (ext.name.length() == extLength
+                    && filename.regionMatches(true, dot + 1, ext.name, 0, extLength)) {
+                return ext.type;
+            }
+        }
+        return MediaType.OTHER;
+    }
+
+    /**
+     * Image or video, excluding Mac metadata files (._name)
+     */
+    public boolean isMediaFile(String filename) {
+        if (filename == null || isMacMetadataFile(filename)) {
+            return false;
+        }
+        return classify(filename) != MediaType.OTHER;
+    }
+
+    public boolean isImageFile(String filename) {
+        return classify(filename) == MediaType.IMAGE;
+    }
+
+    public boolean isVideoFile(String filename) {
+        return classify(filename) == MediaType.VIDEO;
+    }
+
+    /**
+     * Mac metadata files start with "._" (checked on the last path segment)
+     */
+    private boolean isMacMetadataFile(String filename) {
+        int nameStart = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1;
+        return filename.startsWith("._", nameStart);
+    }
+
+    private static int bucketOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        return -1;
+    }
+}
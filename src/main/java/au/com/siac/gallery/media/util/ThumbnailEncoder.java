@@ -0,0 +1,33 @@
+package au.com.siac.gallery.media.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes thumbnail images in one output format
+ * Implementations are picked per request from the Accept header
+ * (see ThumbnailEncoders)
+ */
+public interface ThumbnailEncoder {
+
+    /**
+     * Short format name used in configuration, e.g. "jpeg" or "webp"
+     */
+    String getFormat();
+
+    /**
+     * MIME type sent to and accepted by browsers, e.g. "image/webp"
+     */
+    String getMimeType();
+
+    /**
+     * File extension (without dot) for files in this format
+     */
+    String getExtension();
+
+    /**
+     * Write the image with the given quality (0-100), atomically replacing target
+     */
+    void write(BufferedImage image, Path target, float quality) throws IOException;
+}
@@ -0,0 +1,92 @@
+package au.com.siac.gallery.media.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Thumbnail formats enabled by media.thumbnails.formats (jpeg by default)
+ * JPEG is always first and is the fallback for every client; other formats
+ * (webp) are only written when an ImageIO writer for them works on this
+ * machine, and only served to clients that list them explicitly in Accept
+ */
+@Component
+public class ThumbnailEncoders {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailEncoders.class);
+
+    private final ThumbnailEncoder jpeg = ImageIOThumbnailEncoder.JPEG;
+    private final List<ThumbnailEncoder> alternatives;
+
+    public ThumbnailEncoders(@Value("${media.thumbnails.formats:jpeg}") String formats) {
+        // Plugins inside the Boot jar aren't seen by ImageIO's first scan
+        ImageIO.scanForPlugins();
+        List<ThumbnailEncoder> enabled = new ArrayList<>();
+        for (String format : formats.split(",")) {
+            String name = format.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty() || name.equals("jpeg") || name.equals("jpg")) {
+                continue;
+            }
+            ImageIOThumbnailEncoder encoder = new ImageIOThumbnailEncoder(name, "image/" + name, name);
+            if (encoder.isAvailable()) {
+                enabled.add(encoder);
+            } else {
+                logger.warn("No working ImageIO writer for {} thumbnails; serving JPEG only", name);
+            }
+        }
+        this.alternatives = Collections.unmodifiableList(enabled);
+    }
+
+    /**
+     * The JPEG encoder every thumbnail is written with
+     */
+    public ThumbnailEncoder getDefault() {
+        return jpeg;
+    }
+
+    /**
+     * Extra formats written next to each JPEG thumbnail
+     */
+    public List<ThumbnailEncoder> getAlternatives() {
+        return alternatives;
+    }
+
+    /**
+     * Best encoder for an Accept header: the first alternative the client
+     * names explicitly with q > 0, otherwise JPEG (wildcards don't count)
+     */
+    public ThumbnailEncoder negotiate(String accept) {
+        if (alternatives.isEmpty() || accept == null || accept.isEmpty()) {
+            return jpeg;
+        }
+
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return jpeg;
+        }
+
+        for (ThumbnailEncoder encoder : alternatives) {
+            MediaType offered = MediaType.parseMediaType(encoder.getMimeType());
+            for (MediaType mediaType : accepted) {
+                if (!mediaType.isWildcardSubtype() && mediaType.getQualityValue() > 0
+                        && mediaType.getType().equalsIgnoreCase(offered.getType())
+                        && mediaType.getSubtype().equalsIgnoreCase(offered.getSubtype())) {
+                    return encoder;
+                }
+            }
+        }
+        return jpeg;
+    }
+}
@@ -71,11 +71,13 @@ public class MemoriesController {
     }
     
     /**
-     * Index all photos (admin endpoint)
+     * Index new, changed and deleted photos (admin endpoint)
+     * full=true re-checks every folder instead of only changed ones
      */
     @PostMapping("/index")
-    public ResponseEntity<Map<String, Object>> indexPhotos() {
-        Map<String, Object> result = memoriesService.indexAllPhotos();
+    public ResponseEntity<Map<String, Object>> indexPhotos(
+            @RequestParam(defaultValue = "false") boolean full) {
+        Map<String, Object> result = memoriesService.indexAllPhotos(full);
         return ResponseEntity.ok(result);
     }
     
@@ -93,6 +93,7 @@ public class MemoriesDebugController {
         Map<String, Long> bySource = new HashMap<>();
         List<PhotoMetadata> allPhotos = photoMetadataRepository.findAll();
         bySource.put("EXIF", allPhotos.stream().filter(p -> "EXIF".equals(p.getDateSource())).count());
+        bySource.put("METADATA", allPhotos.stream().filter(p -> "METADATA".equals(p.getDateSource())).count());
         bySource.put("FILE_CREATION", allPhotos.stream().filter(p -> "FILE_CREATION".equals(p.getDateSource())).count());
         bySource.put("FILE_MODIFIED", allPhotos.stream().filter(p -> "FILE_MODIFIED".equals(p.getDateSource())).count());
         debug.put("photos_by_source", bySource);
@@ -0,0 +1,123 @@
+package au.com.siac.gallery.memories.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index journal entry for one folder under image.folder
+ * Stores the folder's fingerprint (mtime + entry count) from the last scan
+ * and its subfolder names, so unchanged folders are skipped without
+ * listing or stat-ing their files
+ */
+@Entity
+@Table(name = "indexed_directory")
+public class IndexedDirectory {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+    
+    // Relative to image.folder, "" for the root
+    @Column(nullable = false, unique = true, length = 500)
+    private String path;
+    
+    @Column(name = "last_modified")
+    private Long lastModified;
+    
+    @Column(name = "entry_count")
+    private Integer entryCount;
+    
+    // Subfolder names, one per line
+    @Column(name = "subdirectories", columnDefinition = "TEXT")
+    private String subdirectories;
+    
+    @Column(name = "last_scanned")
+    private LocalDateTime lastScanned;
+    
+    // Constructors
+    public IndexedDirectory() {
+    }
+    
+    public IndexedDirectory(String path) {
+        this.path = path;
+    }
+    
+    /**
+     * True when the folder still has the fingerprint recorded at the last scan
+     */
+    public boolean matches(long lastModified, int entryCount) {
+        return this.lastModified != null && this.lastModified == lastModified
+            && this.entryCount != null && this.entryCount == entryCount;
+    }
+    
+    /**
+     * Record a fresh scan of the folder
+     */
+    public void update(long lastModified, int entryCount, List<String> subdirectoryNames) {
+        this.lastModified = lastModified;
+        this.entryCount = entryCount;
+        this.subdirectories = subdirectoryNames.isEmpty() ? null : String.join("\n", subdirectoryNames);
+        this.lastScanned = LocalDateTime.now();
+    }
+    
+    public List<String> getSubdirectoryNames() {
+        if (subdirectories == null || subdirectories.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        Collections.addAll(names, subdirectories.split("\n"));
+        return names;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getPath() {
+        return path;
+    }
+    
+    public void setPath(String path) {
+        this.path = path;
+    }
+    
+    public Long getLastModified() {
+        return lastModified;
+    }
+    
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+    
+    public Integer getEntryCount() {
+        return entryCount;
+    }
+    
+    public void setEntryCount(Integer entryCount) {
+        this.entryCount = entryCount;
+    }
+    
+    public String getSubdirectories() {
+        return subdirectories;
+    }
+    
+    public void setSubdirectories(String subdirectories) {
+        this.subdirectories = subdirectories;
+    }
+    
+    public LocalDateTime getLastScanned() {
+        return lastScanned;
+    }
+    
+    public void setLastScanned(LocalDateTime lastScanned) {
+        this.lastScanned = lastScanned;
+    }
+}
@@ -1,23 +1,32 @@
 package au.com.siac.gallery.memories.entity;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "photo_metadata", indexes = {
     @Index(name = "idx_month_day", columnList = "photo_month,photo_day"),
-    @Index(name = "idx_capture_date", columnList = "capture_date")
+    @Index(name = "idx_capture_date", columnList = "capture_date"),
+    @Index(name = "idx_folder_path", columnList = "folder_path")
 })
 public class PhotoMetadata {
     
+    // Explicit pooled sequence (same name/step Hibernate picks for AUTO) so
+    // IDs are allocated 50 at a time and saveAll inserts go out as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photo_metadata_seq")
+    @SequenceGenerator(name = "photo_metadata_seq", sequenceName = "photo_metadata_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true, length = 500)
     private String filePath;
     
+    // Parent folder of filePath ("" for the root), used by incremental indexing
+    @Column(name = "folder_path", length = 500)
+    private String folder;
+    
     @Column(name = "thumbnail_path", length = 500)
     private String thumbnailPath;
     
@@ -25,7 +34,7 @@ public class PhotoMetadata {
     private LocalDate captureDate;
     
     @Column(name = "date_source", length = 20)
-    private String dateSource;  // 'EXIF', 'FILE_CREATION', 'FILE_MODIFIED', 'FILENAME'
+    private String dateSource;  // 'EXIF', 'METADATA' (video creation_time), 'FILE_CREATION', 'FILE_MODIFIED', 'FILENAME'
     
     // Renamed columns to avoid H2 reserved keywords
     @Column(name = "photo_year")
@@ -46,6 +55,25 @@ public class PhotoMetadata {
     @Column(name = "file_size")
     private Long fileSize;
     
+    @Column(name = "file_modified")
+    private Long fileModified;  // File mtime (millis) when indexed
+    
+    // Pixel size and GPS from EXIF (images) or ffprobe (videos, coded size); null when not present
+    @Column(name = "image_width")
+    private Integer width;
+    
+    @Column(name = "image_height")
+    private Integer height;
+    
+    @Column(name = "orientation")
+    private Integer orientation;  // EXIF orientation 1-8
+    
+    @Column(name = "gps_latitude")
+    private Double latitude;
+    
+    @Column(name = "gps_longitude")
+    private Double longitude;
+    
     // Video-specific fields (null for images)
     @Column(name = "media_type", length = 10)
     private String mediaType = "IMAGE";  // 'IMAGE' or 'VIDEO'
@@ -54,7 +82,33 @@ public class PhotoMetadata {
     private Integer videoDuration;  // Duration in seconds (null for images)
     
     @Column(name = "video_resolution", length = 20)
-    private String videoResolution;  // e.g., "1920x1080" (null for images)
+    private String videoResolution;  // e.g., "1920x1080" as displayed (null for images)
+    
+    @Column(name = "video_codec", length = 20)
+    private String videoCodec;  // e.g., "h264", "hevc"
+    
+    @Column(name = "video_frame_rate")
+    private Double videoFrameRate;
+    
+    @Column(name = "video_bit_rate")
+    private Long videoBitRate;  // Overall bits per second
+    
+    @Column(name = "video_rotation")
+    private Integer videoRotation;  // Clockwise degrees for display: 0, 90, 180, 270
+    
+    @Column(name = "video_has_audio")
+    private Boolean videoHasAudio;
+    
+    @Column(name = "video_creation_time")
+    private Instant videoCreationTime;  // Container creation_time (UTC)
+    
+    // File stamp ffprobe last ran against, whether or not it could read the file
+    // (null: indexed before probe attempts were recorded)
+    @Column(name = "video_probe_size")
+    private Long videoProbeSize;
+    
+    @Column(name = "video_probe_modified")
+    private Long videoProbeModified;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -80,7 +134,7 @@ public class PhotoMetadata {
     }
     
     public PhotoMetadata(String filePath, LocalDate captureDate, String dateSource) {
-        this.filePath = filePath;
+        setFilePath(filePath);
         this.captureDate = captureDate;
         this.dateSource = dateSource;
         if (captureDate != null) {
@@ -105,6 +159,26 @@ public class PhotoMetadata {
     
     public void setFilePath(String filePath) {
         this.filePath = filePath;
+        this.folder = folderOf(filePath);
+    }
+    
+    public String getFolder() {
+        return folder;
+    }
+    
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+    
+    /**
+     * Parent folder of a relative path, "" for files in the root
+     */
+    public static String folderOf(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        int slash = filePath.lastIndexOf('/');
+        return slash < 0 ? "" : filePath.substring(0, slash);
     }
     
     public String getThumbnailPath() {
@@ -184,6 +258,54 @@ public class PhotoMetadata {
         this.fileSize = fileSize;
     }
     
+    public Long getFileModified() {
+        return fileModified;
+    }
+    
+    public void setFileModified(Long fileModified) {
+        this.fileModified = fileModified;
+    }
+    
+    public Integer getWidth() {
+        return width;
+    }
+    
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+    
+    public Integer getHeight() {
+        return height;
+    }
+    
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+    
+    public Integer getOrientation() {
+        return orientation;
+    }
+    
+    public void setOrientation(Integer orientation) {
+        this.orientation = orientation;
+    }
+    
+    public Double getLatitude() {
+        return latitude;
+    }
+    
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+    
+    public Double getLongitude() {
+        return longitude;
+    }
+    
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -224,6 +346,70 @@ public class PhotoMetadata {
         this.videoResolution = videoResolution;
     }
     
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+    
+    public void setVideoCodec(String videoCodec) {
+        this.videoCodec = videoCodec;
+    }
+    
+    public Double getVideoFrameRate() {
+        return videoFrameRate;
+    }
+    
+    public void setVideoFrameRate(Double videoFrameRate) {
+        this.videoFrameRate = videoFrameRate;
+    }
+    
+    public Long getVideoBitRate() {
+        return videoBitRate;
+    }
+    
+    public void setVideoBitRate(Long videoBitRate) {
+        this.videoBitRate = videoBitRate;
+    }
+    
+    public Integer getVideoRotation() {
+        return videoRotation;
+    }
+    
+    public void setVideoRotation(Integer videoRotation) {
+        this.videoRotation = videoRotation;
+    }
+    
+    public Boolean getVideoHasAudio() {
+        return videoHasAudio;
+    }
+    
+    public void setVideoHasAudio(Boolean videoHasAudio) {
+        this.videoHasAudio = videoHasAudio;
+    }
+    
+    public Instant getVideoCreationTime() {
+        return videoCreationTime;
+    }
+    
+    public void setVideoCreationTime(Instant videoCreationTime) {
+        this.videoCreationTime = videoCreationTime;
+    }
+    
+    public Long getVideoProbeSize() {
+        return videoProbeSize;
+    }
+    
+    public void setVideoProbeSize(Long videoProbeSize) {
+        this.videoProbeSize = videoProbeSize;
+    }
+    
+    public Long getVideoProbeModified() {
+        return videoProbeModified;
+    }
+    
+    public void setVideoProbeModified(Long videoProbeModified) {
+        this.videoProbeModified = videoProbeModified;
+    }
+    
     public boolean isVideo() {
         return "VIDEO".equals(mediaType);
     }
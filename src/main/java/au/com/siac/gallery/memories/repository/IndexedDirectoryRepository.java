@@ -0,0 +1,9 @@
+package au.com.siac.gallery.memories.repository;
+
+import au.com.siac.gallery.memories.entity.IndexedDirectory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IndexedDirectoryRepository extends JpaRepository<IndexedDirectory, Long> {
+}
@@ -1,10 +1,13 @@
 package au.com.siac.gallery.memories.repository;
 
 import au.com.siac.gallery.memories.entity.PhotoMetadata;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -39,4 +42,51 @@ public interface PhotoMetadataRepository extends JpaRepository<PhotoMetadata, Lo
      * Used by VideoService to get all videos
      */
     List<PhotoMetadata> findByMediaType(String mediaType);
+    
+    /**
+     * Just what incremental indexing compares against the file system
+     */
+    interface IndexedFile {
+        Long getId();
+        String getFilePath();
+        String getThumbnailPath();
+        Long getFileSize();
+        Long getFileModified();
+        String getMediaType();
+        String getVideoCodec();
+    }
+    
+    /**
+     * Index state of every photo/video directly inside a folder ("" for the root)
+     * One query per changed folder instead of one per file
+     */
+    @Query("SELECT p.id AS id, p.filePath AS filePath, p.thumbnailPath AS thumbnailPath, " +
+           "p.fileSize AS fileSize, p.fileModified AS fileModified, " +
+           "p.mediaType AS mediaType, p.videoCodec AS videoCodec " +
+           "FROM PhotoMetadata p WHERE p.folder = :folder")
+    List<IndexedFile> findIndexedFilesByFolder(@Param("folder") String folder);
+    
+    /**
+     * Videos indexed before probe attempts were recorded (and so before codec,
+     * frame rate and rotation were stored). A video ffprobe could not read has
+     * its attempt recorded and is not listed again
+     */
+    @Query("SELECT p.id AS id, p.filePath AS filePath, p.thumbnailPath AS thumbnailPath, " +
+           "p.fileSize AS fileSize, p.fileModified AS fileModified, " +
+           "p.mediaType AS mediaType, p.videoCodec AS videoCodec " +
+           "FROM PhotoMetadata p WHERE p.mediaType = 'VIDEO' AND p.videoProbeModified IS NULL")
+    List<IndexedFile> findUnprobedVideos();
+    
+    /**
+     * Record size/mtime for a row indexed before they were tracked
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PhotoMetadata p SET p.fileSize = :fileSize, p.fileModified = :fileModified WHERE p.id = :id")
+    int updateFileStamp(@Param("id") Long id, @Param("fileSize") long fileSize, @Param("fileModified") long fileModified);
+    
+    /**
+     * Rows indexed before folder_path existed (backfilled a page at a time)
+     */
+    List<PhotoMetadata> findByFolderIsNull(Pageable pageable);
 }
@@ -0,0 +1,377 @@
+package au.com.siac.gallery.memories.service;
+
+import au.com.siac.gallery.media.service.ThumbnailPyramidService;
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+import au.com.siac.gallery.memories.entity.IndexedDirectory;
+import au.com.siac.gallery.memories.entity.PhotoMetadata;
+import au.com.siac.gallery.memories.repository.IndexedDirectoryRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository.IndexedFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scan stage for MemoriesService.indexAllPhotos, driven by the index journal
+ *
+ * A folder whose mtime and entry count match the journal is skipped: its
+ * files are not stat-ed and the database is not queried, and the walk
+ * continues into its recorded subfolders. A changed folder is listed with one
+ * attribute read per entry and reconciled against its rows in one query:
+ * new files are queued, modified files (size or mtime differ) are re-indexed,
+ * and rows for missing files are deleted along with their thumbnails.
+ * Folders that no longer exist are dropped with their rows; a folder or file
+ * that exists but can't be read (permissions, a share timing out) keeps its
+ * rows until a later run can read it.
+ *
+ * Editing a file in place does not touch its folder's mtime, so such edits
+ * are only picked up by a full scan, which ignores the fingerprints.
+ *
+ * Videos indexed before probe attempts were recorded (and so before the
+ * codec, frame rate, rotation, bit rate and creation time were stored) are
+ * probed once more wherever they are, whether or not their folder changed.
+ * Their rows are updated in place; ids and thumbnails are kept. A video
+ * ffprobe can't read has its attempt recorded and is only probed again when
+ * the file itself changes.
+ */
+final class IncrementalIndexScan {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalIndexScan.class);
+
+    private static final int BACKFILL_PAGE_SIZE = 1000;
+
+    private final Path root;
+    private final PhotoMetadataRepository photoMetadataRepository;
+    private final IndexedDirectoryRepository indexedDirectoryRepository;
+    private final MediaTypeClassifier mediaTypeClassifier;
+    private final ThumbnailPyramidService thumbnailPyramidService;
+
+    // Journal entries to save once the pipeline has drained
+    private final List<IndexedDirectory> changedDirectories = new ArrayList<>();
+
+    // Path -> row of videos still to probe; rows re-indexed or dropped while reconciling are taken out
+    private final Map<String, IndexedFile> unprobedVideos = new HashMap<>();
+
+    private int directoriesScanned;
+    private int directoriesSkipped;
+    private int skipped;
+    private int updated;
+    private int removed;
+    private int reprobed;
+
+    IncrementalIndexScan(Path root, PhotoMetadataRepository photoMetadataRepository,
+                         IndexedDirectoryRepository indexedDirectoryRepository,
+                         MediaTypeClassifier mediaTypeClassifier,
+                         ThumbnailPyramidService thumbnailPyramidService) {
+        this.root = root;
+        this.photoMetadataRepository = photoMetadataRepository;
+        this.indexedDirectoryRepository = indexedDirectoryRepository;
+        this.mediaTypeClassifier = mediaTypeClassifier;
+        this.thumbnailPyramidService = thumbnailPyramidService;
+    }
+
+    /**
+     * Walk the tree and queue new/modified files on the pipeline
+     *
+     * @param full ignore folder fingerprints and reconcile every folder
+     */
+    void run(PhotoIndexPipeline pipeline, boolean full) throws IOException, InterruptedException {
+        backfillFolders();
+        for (IndexedFile row : photoMetadataRepository.findUnprobedVideos()) {
+            unprobedVideos.put(row.getFilePath(), row);
+        }
+
+        Map<String, IndexedDirectory> journal = new HashMap<>();
+        for (IndexedDirectory directory : indexedDirectoryRepository.findAll()) {
+            journal.put(directory.getPath(), directory);
+        }
+
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push("");
+
+        while (!pending.isEmpty()) {
+            String relative = pending.pop();
+            Path dir = relative.isEmpty() ? root : root.resolve(relative);
+            IndexedDirectory record = journal.remove(relative);
+
+            long lastModified;
+            List<String> names;
+            try {
+                lastModified = Files.getLastModifiedTime(dir).toMillis();
+                names = listNames(dir);
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                if (relative.isEmpty()) {
+                    throw e;
+                }
+                // Removed mid-scan; the journal entry is dropped below
+                logger.debug("Folder {} no longer exists", relative);
+                if (record != null) {
+                    journal.put(relative, record);
+                }
+                continue;
+            } catch (IOException e) {
+                if (relative.isEmpty()) {
+                    throw e;
+                }
+                // Permissions, a share timing out, a stale handle: keep the subtree as indexed
+                logger.warn("Skipping unreadable folder {}, keeping its index: {}", relative, e.getMessage());
+                keepSubtree(journal, relative);
+                continue;
+            }
+
+            if (relative.isEmpty() && names.isEmpty()
+                    && record != null && record.getEntryCount() != null && record.getEntryCount() > 0) {
+                // Most likely an unmounted share; don't drop the whole index
+                throw new IOException("Image folder is empty, skipping reconcile: " + root);
+            }
+
+            if (!full && record != null && record.matches(lastModified, names.size())) {
+                directoriesSkipped++;
+                for (String name : record.getSubdirectoryNames()) {
+                    pending.push(child(relative, name));
+                }
+                continue;
+            }
+
+            directoriesScanned++;
+            List<String> subdirectories = new ArrayList<>();
+            Map<String, BasicFileAttributes> mediaFiles = new HashMap<>();
+            Set<String> unreadable = new HashSet<>();
+            for (String name : names) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(dir.resolve(name), BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable entry {}: {}", child(relative, name), e.getMessage());
+                    unreadable.add(name);
+                    if (journal.containsKey(child(relative, name))) {
+                        // A known folder: visited (and kept) like any other
+                        subdirectories.add(name);
+                    }
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (!isThumbnailFolder(name)) {
+                        subdirectories.add(name);
+                    }
+                } else if (attributes.isRegularFile() && mediaTypeClassifier.isMediaFile(name)) {
+                    mediaFiles.put(name, attributes);
+                }
+            }
+
+            reconcileFolder(relative, mediaFiles, unreadable, pipeline);
+
+            for (String name : subdirectories) {
+                pending.push(child(relative, name));
+            }
+
+            if (!unreadable.isEmpty()) {
+                // Leave the old fingerprint so the next run looks at this folder again
+                continue;
+            }
+            if (record == null) {
+                record = new IndexedDirectory(relative);
+            }
+            record.update(lastModified, names.size(), subdirectories);
+            changedDirectories.add(record);
+        }
+
+        // Anything left in the journal was not reached: the folder is gone
+        for (IndexedDirectory stale : journal.values()) {
+            List<IndexedFile> rows = photoMetadataRepository.findIndexedFilesByFolder(stale.getPath());
+            deleteRows(rows);
+            removed += rows.size();
+        }
+        indexedDirectoryRepository.deleteAllInBatch(journal.values());
+
+        reprobeVideos(pipeline);
+    }
+
+    /**
+     * Probe videos indexed before probe attempts were recorded, updating their rows in place
+     */
+    private void reprobeVideos(PhotoIndexPipeline pipeline) throws InterruptedException {
+        List<IndexedFile> rows = new ArrayList<>();
+        for (IndexedFile row : unprobedVideos.values()) {
+            // Gone with a removed folder, or in one we couldn't read: leave it
+            if (Files.isRegularFile(root.resolve(row.getFilePath()))) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        logger.info("Probing {} videos indexed before codec details were stored", rows.size());
+        reprobed += rows.size();
+        for (IndexedFile row : rows) {
+            pipeline.reprobe(row.getId(), row.getFilePath());
+        }
+    }
+
+    /**
+     * Persist the fingerprints of the folders scanned in this run
+     * Called after the pipeline drains so an interrupted run rescans them
+     *
+     * @param failedFolders folders holding a file the pipeline couldn't index;
+     *                      left as they were so the next run retries them
+     */
+    void commitJournal(Set<String> failedFolders) {
+        List<IndexedDirectory> completed = new ArrayList<>(changedDirectories.size());
+        for (IndexedDirectory directory : changedDirectories) {
+            if (!failedFolders.contains(directory.getPath())) {
+                completed.add(directory);
+            }
+        }
+        indexedDirectoryRepository.saveAll(completed);
+    }
+
+    void report(Map<String, Object> result) {
+        result.put("skipped", skipped);
+        result.put("updated", updated);
+        result.put("removed", removed);
+        result.put("reprobed", reprobed);
+        result.put("directories_scanned", directoriesScanned);
+        result.put("directories_skipped", directoriesSkipped);
+    }
+
+    /**
+     * @param unreadable entries that could not be stat-ed; their rows are kept as they are
+     */
+    private void reconcileFolder(String folder, Map<String, BasicFileAttributes> mediaFiles, Set<String> unreadable,
+                                 PhotoIndexPipeline pipeline) throws InterruptedException {
+        List<IndexedFile> stale = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+
+        for (IndexedFile row : photoMetadataRepository.findIndexedFilesByFolder(folder)) {
+            String name = row.getFilePath().substring(folder.isEmpty() ? 0 : folder.length() + 1);
+            BasicFileAttributes attributes = mediaFiles.remove(name);
+            if (attributes == null && unreadable.contains(name)) {
+                unprobedVideos.remove(row.getFilePath());
+                skipped++;
+                continue;
+            }
+            if (attributes == null) {
+                unprobedVideos.remove(row.getFilePath());
+                stale.add(row);
+                removed++;
+                continue;
+            }
+
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            boolean sizeChanged = row.getFileSize() != null && row.getFileSize() != size;
+            boolean timeChanged = row.getFileModified() != null && row.getFileModified() != modified;
+
+            if (sizeChanged || timeChanged) {
+                // Re-indexed, which probes it again; unchanged unprobed videos are probed in place at the end
+                unprobedVideos.remove(row.getFilePath());
+                stale.add(row);
+                changed.add(row.getFilePath());
+                updated++;
+            } else {
+                if (row.getFileModified() == null || row.getFileSize() == null) {
+                    // Indexed before the journal existed; record what we see now
+                    photoMetadataRepository.updateFileStamp(row.getId(), size, modified);
+                }
+                skipped++;
+            }
+        }
+
+        deleteRows(stale);
+
+        for (String relativePath : changed) {
+            pipeline.submit(relativePath);
+        }
+        for (String name : mediaFiles.keySet()) {
+            pipeline.submit(child(folder, name));
+        }
+    }
+
+    private void deleteRows(List<IndexedFile> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (IndexedFile row : rows) {
+            ids.add(row.getId());
+        }
+        photoMetadataRepository.deleteAllByIdInBatch(ids);
+        for (IndexedFile row : rows) {
+            thumbnailPyramidService.delete(row.getFilePath());
+            String thumbnailPath = row.getThumbnailPath();
+            if (thumbnailPath == null || !thumbnailPath.startsWith(".thumbnails/")) {
+                continue;
+            }
+            try {
+                Path thumbnail = root.resolve(thumbnailPath).normalize();
+                if (thumbnail.startsWith(root)) {
+                    Files.deleteIfExists(thumbnail);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not delete thumbnail {}: {}", thumbnailPath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Take a folder and everything under it out of the journal, so it is
+     * neither rescanned nor treated as removed in this run
+     */
+    private static void keepSubtree(Map<String, IndexedDirectory> journal, String folder) {
+        String prefix = folder + "/";
+        journal.keySet().removeIf(path -> path.equals(folder) || path.startsWith(prefix));
+    }
+
+    /**
+     * Fill folder_path for rows indexed before the column existed
+     */
+    private void backfillFolders() {
+        List<PhotoMetadata> page;
+        while (!(page = photoMetadataRepository.findByFolderIsNull(PageRequest.of(0, BACKFILL_PAGE_SIZE))).isEmpty()) {
+            for (PhotoMetadata row : page) {
+                row.setFolder(PhotoMetadata.folderOf(row.getFilePath()));
+            }
+            photoMetadataRepository.saveAll(page);
+            logger.info("Backfilled folder for {} indexed files", page.size());
+        }
+    }
+
+    /**
+     * Entry names only; no per-entry stat
+     */
+    private static List<String> listNames(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private static boolean isThumbnailFolder(String name) {
+        return name.equals(".thumbnails") || name.equals("thumbnails");
+    }
+
+    private static String child(String folder, String name) {
+        return folder.isEmpty() ? name : folder + "/" + name;
+    }
+}
@@ -48,8 +48,10 @@ public class MemoriesScheduler {
         try {
             Map<String, Object> result = memoriesService.indexAllPhotos();
             
-            logger.info("[MemoriesScheduler] Auto-indexing complete: {} indexed, {} skipped, {} errors in {}ms",
+            logger.info("[MemoriesScheduler] Auto-indexing complete: {} indexed, {} updated, {} removed, {} skipped, {} errors in {}ms",
                 result.get("indexed"),
+                result.get("updated"),
+                result.get("removed"),
                 result.get("skipped"),
                 result.get("errors"),
                 result.get("duration_ms"));
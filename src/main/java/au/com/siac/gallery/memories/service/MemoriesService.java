@@ -1,28 +1,24 @@
 package au.com.siac.gallery.memories.service;
 
+import au.com.siac.gallery.media.service.ThumbnailPyramidService;
+import au.com.siac.gallery.media.util.ExifInfo;
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
 import au.com.siac.gallery.memories.entity.PhotoMetadata;
+import au.com.siac.gallery.memories.repository.IndexedDirectoryRepository;
 import au.com.siac.gallery.memories.repository.PhotoMetadataRepository;
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.exif.ExifIFD0Directory;
-import com.drew.metadata.exif.ExifSubIFDDirectory;
+import au.com.siac.gallery.video.util.VideoProbe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -30,7 +26,6 @@ import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class MemoriesService {
@@ -43,19 +38,38 @@ public class MemoriesService {
     @Value("${memories.thumbnail-size:400}")
     private int thumbnailSize;
     
-    @Value("${memories.thumbnail-quality:85}")
-    private float thumbnailQuality;
+    // Indexing pipeline concurrency (0 = number of CPU cores)
+    @Value("${memories.index.extract-threads:4}")
+    private int extractThreads;
+    
+    @Value("${memories.index.thumbnail-threads:0}")
+    private int thumbnailThreads;
+    
+    @Value("${memories.index.queue-capacity:256}")
+    private int indexQueueCapacity;
+    
+    @Value("${memories.index.batch-size:100}")
+    private int indexBatchSize;
     
     private final PhotoMetadataRepository photoMetadataRepository;
+    private final IndexedDirectoryRepository indexedDirectoryRepository;
     private final au.com.siac.gallery.video.util.VideoThumbnailGenerator videoThumbnailGenerator;
     private final au.com.siac.gallery.video.util.VideoMetadataExtractor videoMetadataExtractor;
+    private final MediaTypeClassifier mediaTypeClassifier;
+    private final ThumbnailPyramidService thumbnailPyramidService;
     
     public MemoriesService(PhotoMetadataRepository photoMetadataRepository,
+                          IndexedDirectoryRepository indexedDirectoryRepository,
                           au.com.siac.gallery.video.util.VideoThumbnailGenerator videoThumbnailGenerator,
-                          au.com.siac.gallery.video.util.VideoMetadataExtractor videoMetadataExtractor) {
+                          au.com.siac.gallery.video.util.VideoMetadataExtractor videoMetadataExtractor,
+                          MediaTypeClassifier mediaTypeClassifier,
+                          ThumbnailPyramidService thumbnailPyramidService) {
         this.photoMetadataRepository = photoMetadataRepository;
+        this.indexedDirectoryRepository = indexedDirectoryRepository;
         this.videoThumbnailGenerator = videoThumbnailGenerator;
         this.videoMetadataExtractor = videoMetadataExtractor;
+        this.mediaTypeClassifier = mediaTypeClassifier;
+        this.thumbnailPyramidService = thumbnailPyramidService;
     }
     
     
@@ -129,285 +143,310 @@ public class MemoriesService {
             return existing.get();
         }
         
-        // Determine if this is a video or image
-        boolean isVideo = videoMetadataExtractor.isVideoFile(relativePath);
-        
-        PhotoMetadata metadata;
-        
-        if (isVideo) {
-            // Handle video file
-            metadata = indexVideoFile(mediaPath, relativePath);
-        } else {
-            // Handle image file (existing logic)
-            metadata = indexImageFile(mediaPath, relativePath);
-        }
-        
-        return metadata != null ? photoMetadataRepository.save(metadata) : null;
-    }
-    
-    /**
-     * Index an image file (existing logic extracted to separate method)
-     */
-    private PhotoMetadata indexImageFile(Path photoPath, String relativePath) {
-        LocalDate captureDate = extractPhotoDate(photoPath);
-        if (captureDate == null) {
-            logger.warn("Could not determine date for: {}", relativePath);
+        PhotoMetadata metadata = extractMetadata(relativePath);
+        if (metadata == null) {
             return null;
         }
         
-        String dateSource = determineDateSource(photoPath);
-        PhotoMetadata metadata = new PhotoMetadata(relativePath, captureDate, dateSource);
-        metadata.setMediaType("IMAGE");
-        
-        // Generate thumbnail
         try {
-            String thumbnailPath = generateThumbnail(photoPath, relativePath);
-            metadata.setThumbnailPath(thumbnailPath);
+            attachThumbnail(metadata);
         } catch (Exception e) {
             logger.warn("Could not generate thumbnail for: {}", relativePath, e);
             // Continue without thumbnail - will fall back to full image
         }
         
-        // Extract camera model
-        try {
-            String cameraModel = extractCameraModel(photoPath.toFile());
-            metadata.setCameraModel(cameraModel);
-        } catch (Exception e) {
-            // Camera model is optional
-        }
-        
-        // Get file size
-        try {
-            metadata.setFileSize(Files.size(photoPath));
-        } catch (IOException e) {
-            // File size is optional
-        }
-        
-        return metadata;
+        return photoMetadataRepository.save(metadata);
     }
     
     /**
-     * Index a video file (new method for Phase 1)
+     * Build metadata for a media file without rendering its thumbnail
+     * Pipeline stage 1 (see PhotoIndexPipeline)
      */
-    private PhotoMetadata indexVideoFile(Path videoPath, String relativePath) {
-        // Extract video metadata
-        Map<String, Object> videoMeta = videoMetadataExtractor.extractMetadata(videoPath);
-        
-        LocalDate captureDate = (LocalDate) videoMeta.get("captureDate");
-        if (captureDate == null) {
-            logger.warn("Could not determine date for video: {}", relativePath);
-            return null;
-        }
-        
-        String dateSource = (String) videoMeta.get("dateSource");
-        PhotoMetadata metadata = new PhotoMetadata(relativePath, captureDate, dateSource);
-        metadata.setMediaType("VIDEO");
-        
-        // Set video-specific fields
-        Integer duration = (Integer) videoMeta.get("duration");
-        if (duration != null) {
-            metadata.setVideoDuration(duration);
-        }
+    PhotoMetadata extractMetadata(String relativePath) {
+        Path mediaPath = Paths.get(imageFolder, relativePath);
         
-        String resolution = (String) videoMeta.get("resolution");
-        if (resolution != null) {
-            metadata.setVideoResolution(resolution);
+        // Determine if this is a video or image
+        if (mediaTypeClassifier.isVideoFile(relativePath)) {
+            return indexVideoFile(mediaPath, relativePath);
         }
+        return indexImageFile(mediaPath, relativePath);
+    }
+    
+    /**
+     * Render the thumbnail for already extracted metadata
+     * Pipeline stage 2 (see PhotoIndexPipeline)
+     */
+    void attachThumbnail(PhotoMetadata metadata) throws IOException {
+        String relativePath = metadata.getFilePath();
+        Path mediaPath = Paths.get(imageFolder, relativePath);
         
-        // Generate video thumbnail
-        try {
+        if (metadata.isVideo()) {
             String thumbnailRelativePath = ".thumbnails/" + relativePath + ".jpg";
             Path thumbnailPath = Paths.get(imageFolder, thumbnailRelativePath);
             
-            if (videoThumbnailGenerator.generateVideoThumbnail(videoPath, thumbnailPath)) {
+            Double duration = metadata.getVideoDuration() != null ? metadata.getVideoDuration().doubleValue() : null;
+            if (videoThumbnailGenerator.generateVideoThumbnail(mediaPath, thumbnailPath, duration)) {
                 metadata.setThumbnailPath(thumbnailRelativePath);
+                
+                // Smaller levels from the extracted frame; the frame stays the fallback
+                try {
+                    String level = generateThumbnail(thumbnailPath, relativePath, 1);
+                    if (level != null) {
+                        metadata.setThumbnailPath(level);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not generate thumbnail levels for video: {}", relativePath, e);
+                }
             }
+        } else {
+            int orientation = metadata.getOrientation() != null ? metadata.getOrientation() : 1;
+            metadata.setThumbnailPath(generateThumbnail(mediaPath, relativePath, orientation));
+        }
+    }
+    
+    /**
+     * Save a batch in one transaction; if that fails (e.g. a duplicate path),
+     * fall back to row-by-row so one bad record doesn't lose the batch
+     * Pipeline stage 3 (see PhotoIndexPipeline). Returns the records not saved
+     */
+    List<PhotoMetadata> saveBatch(List<PhotoMetadata> batch) {
+        try {
+            photoMetadataRepository.saveAll(batch);
+            return List.of();
         } catch (Exception e) {
-            logger.warn("Could not generate video thumbnail for: {}", relativePath, e);
-            // Continue without thumbnail
+            logger.warn("Batch save of {} records failed, retrying individually: {}", batch.size(), e.getMessage());
         }
         
-        // Get file size
-        Long fileSize = (Long) videoMeta.get("fileSize");
-        if (fileSize != null) {
-            metadata.setFileSize(fileSize);
+        List<PhotoMetadata> unsaved = new ArrayList<>();
+        for (PhotoMetadata metadata : batch) {
+            try {
+                metadata.setId(null);
+                photoMetadataRepository.save(metadata);
+            } catch (Exception e) {
+                logger.error("Error saving metadata: {}", metadata.getFilePath(), e);
+                unsaved.add(metadata);
+            }
         }
+        return unsaved;
+    }
+    
+    /**
+     * Index an image file
+     * EXIF is parsed once and file attributes read once per file
+     */
+    private PhotoMetadata indexImageFile(Path photoPath, String relativePath) {
+        ExifInfo exif = ExifInfo.read(photoPath.toFile());
         
-        logger.info("Indexed video: {} ({}s, {})", relativePath, duration, resolution);
+        BasicFileAttributes attributes = null;
+        try {
+            attributes = Files.readAttributes(photoPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Dates and size fall back below
+        }
+        
+        LocalDate captureDate = exif.getCaptureDate();
+        String dateSource = "EXIF";
+        if (captureDate == null && attributes != null) {
+            // Fallback to file creation time
+            FileTime creationTime = attributes.creationTime();
+            dateSource = creationTime != null ? "FILE_CREATION" : "FILE_MODIFIED";
+            captureDate = toLocalDate(creationTime != null ? creationTime : attributes.lastModifiedTime());
+        }
+        if (captureDate == null) {
+            logger.warn("Could not determine date for: {}", relativePath);
+            return null;
+        }
+        
+        PhotoMetadata metadata = new PhotoMetadata(relativePath, captureDate, dateSource);
+        metadata.setMediaType("IMAGE");
+        metadata.setCameraModel(exif.getCameraModel());
+        metadata.setOrientation(exif.getOrientation());
+        metadata.setWidth(exif.getWidth());
+        metadata.setHeight(exif.getHeight());
+        metadata.setLatitude(exif.getLatitude());
+        metadata.setLongitude(exif.getLongitude());
+        if (attributes != null) {
+            metadata.setFileSize(attributes.size());
+            metadata.setFileModified(attributes.lastModifiedTime().toMillis());
+        }
         
         return metadata;
     }
     
     /**
-     * Index all photos in the image folder (background job)
+     * Index a video file
+     * One ffprobe run; the capture date comes from the container's
+     * creation_time, falling back to file dates like images do
      */
-    public Map<String, Object> indexAllPhotos() {
-        long startTime = System.currentTimeMillis();
-        int indexed = 0;
-        int skipped = 0;
-        int errors = 0;
-        
-        try (Stream<Path> paths = Files.walk(Paths.get(imageFolder))) {
-            List<Path> imageFiles = paths
-                .filter(Files::isRegularFile)
-                .filter(this::isImageFile)
-                .filter(path -> {
-                    // Exclude thumbnails folder
-                    String pathStr = path.toString();
-                    return !pathStr.contains(File.separator + ".thumbnails" + File.separator) &&
-                           !pathStr.contains(File.separator + "thumbnails" + File.separator);
-                })
-                .collect(Collectors.toList());
-            
-            logger.info("Found {} image files to index", imageFiles.size());
-            
-            for (Path imagePath : imageFiles) {
-                try {
-                    String relativePath = Paths.get(imageFolder).relativize(imagePath)
-                        .toString()
-                        .replace("\\", "/");
-                    
-                    // Skip if already indexed
-                    if (photoMetadataRepository.existsByFilePath(relativePath)) {
-                        skipped++;
-                        continue;
-                    }
-                    
-                    PhotoMetadata metadata = indexPhoto(relativePath);
-                    if (metadata != null) {
-                        indexed++;
-                    } else {
-                        errors++;
-                    }
-                    
-                } catch (Exception e) {
-                    logger.error("Error indexing photo: {}", imagePath, e);
-                    errors++;
-                }
-            }
-            
+    private PhotoMetadata indexVideoFile(Path videoPath, String relativePath) {
+        BasicFileAttributes attributes = null;
+        try {
+            attributes = Files.readAttributes(videoPath, BasicFileAttributes.class);
         } catch (IOException e) {
-            logger.error("Error walking directory", e);
+            // Dates and size fall back below
         }
         
-        long duration = System.currentTimeMillis() - startTime;
+        VideoProbe probe = videoMetadataExtractor.extractMetadata(videoPath, attributes != null ? attributes.size() : 0);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("indexed", indexed);
-        result.put("skipped", skipped);
-        result.put("errors", errors);
-        result.put("duration_ms", duration);
-        result.put("total_in_db", photoMetadataRepository.count());
+        LocalDate captureDate = null;
+        String dateSource = "METADATA";
+        if (probe.getCreationTime() != null) {
+            captureDate = probe.getCreationTime().atZone(ZoneId.systemDefault()).toLocalDate();
+        } else if (attributes != null) {
+            FileTime creationTime = attributes.creationTime();
+            dateSource = creationTime != null ? "FILE_CREATION" : "FILE_MODIFIED";
+            captureDate = toLocalDate(creationTime != null ? creationTime : attributes.lastModifiedTime());
+        }
+        if (captureDate == null) {
+            logger.warn("Could not determine date for video: {}", relativePath);
+            return null;
+        }
         
-        logger.info("Indexing complete: {} indexed, {} skipped, {} errors in {}ms", 
-            indexed, skipped, errors, duration);
+        PhotoMetadata metadata = new PhotoMetadata(relativePath, captureDate, dateSource);
+        metadata.setMediaType("VIDEO");
+        applyProbe(metadata, probe);
+        recordProbeAttempt(metadata, attributes);
         
-        return result;
+        if (attributes != null) {
+            metadata.setFileSize(attributes.size());
+            metadata.setFileModified(attributes.lastModifiedTime().toMillis());
+        }
+        
+        logger.info("Indexed video: {} ({}s, {}, {})", relativePath,
+                probe.getDurationRounded(), probe.getResolution(), probe.getVideoCodec());
+        
+        return metadata;
     }
     
     /**
-     * Extract photo date using EXIF or file attributes
+     * Probe a video indexed before probe attempts were recorded and update its
+     * row in place; the row id and thumbnails are kept
+     * Runs on the pipeline's extract stage (see IncrementalIndexScan)
      */
-    private LocalDate extractPhotoDate(Path filePath) {
-        // Try EXIF first
-        LocalDate exifDate = getExifDate(filePath.toFile());
-        if (exifDate != null) {
-            return exifDate;
+    void reprobeVideo(Long id, String relativePath) {
+        PhotoMetadata metadata = photoMetadataRepository.findById(id).orElse(null);
+        if (metadata == null) {
+            return;
         }
-        
-        // Fallback to file creation time
+        Path videoPath = Paths.get(imageFolder, relativePath);
+        BasicFileAttributes attributes = null;
         try {
-            FileTime creationTime = (FileTime) Files.getAttribute(filePath, "creationTime");
-            return creationTime.toInstant()
-                .atZone(ZoneId.systemDefault())
-                .toLocalDate();
+            attributes = Files.readAttributes(videoPath, BasicFileAttributes.class);
         } catch (IOException e) {
-            // Last resort - modified time
-            try {
-                FileTime modifiedTime = Files.getLastModifiedTime(filePath);
-                return modifiedTime.toInstant()
-                    .atZone(ZoneId.systemDefault())
-                    .toLocalDate();
-            } catch (IOException ex) {
-                return null;
+            // Recorded as attempted at an unknown stamp
+        }
+        
+        VideoProbe probe = videoMetadataExtractor.extractMetadata(videoPath, attributes != null ? attributes.size() : 0);
+        if (probe.getVideoCodec() != null) {
+            // Otherwise keep what the row has rather than the size-based estimate
+            applyProbe(metadata, probe);
+            if (probe.getCreationTime() != null) {
+                metadata.setCaptureDate(probe.getCreationTime().atZone(ZoneId.systemDefault()).toLocalDate());
+                metadata.setDateSource("METADATA");
             }
         }
+        recordProbeAttempt(metadata, attributes);
+        photoMetadataRepository.save(metadata);
+        logger.info("Re-probed video: {} ({})", relativePath,
+                probe.getVideoCodec() != null ? probe.getVideoCodec() : "unreadable");
+    }
+    
+    private static void applyProbe(PhotoMetadata metadata, VideoProbe probe) {
+        metadata.setVideoDuration(probe.getDurationRounded());
+        metadata.setVideoResolution(probe.getResolution());
+        metadata.setWidth(probe.getWidth());
+        metadata.setHeight(probe.getHeight());
+        metadata.setVideoRotation(probe.getRotation());
+        metadata.setVideoCodec(probe.getVideoCodec());
+        metadata.setVideoFrameRate(probe.getFrameRate());
+        metadata.setVideoBitRate(probe.getBitRate());
+        metadata.setVideoHasAudio(probe.hasAudio());
+        metadata.setVideoCreationTime(probe.getCreationTime());
     }
     
     /**
-     * Extract date from EXIF metadata
+     * Record the file stamp ffprobe ran against, whatever it found, so a file
+     * it can't read is not probed again on every run (-1 when the stat failed)
      */
-    private LocalDate getExifDate(File imageFile) {
-        try {
-            Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
-            ExifSubIFDDirectory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
-            
-            if (directory != null && directory.containsTag(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL)) {
-                Date date = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
-                if (date != null) {
-                    return date.toInstant()
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate();
-                }
-            }
-        } catch (Exception e) {
-            // EXIF not available
-        }
-        return null;
+    private static void recordProbeAttempt(PhotoMetadata metadata, BasicFileAttributes attributes) {
+        metadata.setVideoProbeSize(attributes != null ? attributes.size() : -1L);
+        metadata.setVideoProbeModified(attributes != null ? attributes.lastModifiedTime().toMillis() : -1L);
     }
     
     /**
-     * Extract camera model from EXIF
+     * Index new, modified and deleted photos since the last run (background job)
      */
-    private String extractCameraModel(File imageFile) {
-        try {
-            Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
-            ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
-            
-            if (directory != null) {
-                String make = directory.getString(ExifIFD0Directory.TAG_MAKE);
-                String model = directory.getString(ExifIFD0Directory.TAG_MODEL);
-                
-                if (make != null && model != null) {
-                    return make + " " + model;
-                } else if (model != null) {
-                    return model;
-                }
-            }
-        } catch (Exception e) {
-            // Camera model not available
-        }
-        return null;
+    public Map<String, Object> indexAllPhotos() {
+        return indexAllPhotos(false);
     }
     
     /**
-     * Determine the source of the date
+     * Index all photos in the image folder
+     * Folders unchanged since the last run are skipped unless full is set
+     * (see IncrementalIndexScan). Runs as a staged pipeline (see
+     * PhotoIndexPipeline); one run at a time
      */
-    private String determineDateSource(Path filePath) {
-        LocalDate exifDate = getExifDate(filePath.toFile());
-        if (exifDate != null) {
-            return "EXIF";
+    public synchronized Map<String, Object> indexAllPhotos(boolean full) {
+        long startTime = System.currentTimeMillis();
+        boolean completed = false;
+        
+        int cores = Runtime.getRuntime().availableProcessors();
+        PhotoIndexPipeline pipeline = new PhotoIndexPipeline(this,
+            extractThreads > 0 ? extractThreads : cores,
+            thumbnailThreads > 0 ? thumbnailThreads : cores,
+            indexQueueCapacity, indexBatchSize);
+        IncrementalIndexScan scan = new IncrementalIndexScan(Paths.get(imageFolder),
+            photoMetadataRepository, indexedDirectoryRepository, mediaTypeClassifier, thumbnailPyramidService);
+        
+        pipeline.start();
+        long scanStart = System.currentTimeMillis();
+        try {
+            // Scan stage runs on this thread and blocks when extraction falls behind
+            scan.run(pipeline, full);
+            completed = true;
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Error walking directory", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Indexing interrupted");
+        } finally {
+            try {
+                pipeline.finish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completed = false;
+            }
         }
+        long scanMillis = System.currentTimeMillis() - scanStart;
         
-        try {
-            Files.getAttribute(filePath, "creationTime");
-            return "FILE_CREATION";
-        } catch (IOException e) {
-            return "FILE_MODIFIED";
+        if (completed) {
+            // Folders with a file that failed keep their old fingerprint and are retried next run
+            scan.commitJournal(pipeline.getFailedFolders());
         }
+        
+        long duration = System.currentTimeMillis() - startTime;
+        int indexed = pipeline.getIndexed();
+        int errors = pipeline.getErrors();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("indexed", indexed);
+        scan.report(result);
+        result.put("errors", errors);
+        result.put("full", full);
+        result.put("duration_ms", duration);
+        result.put("stages", pipeline.report(scanMillis, duration));
+        result.put("total_in_db", photoMetadataRepository.count());
+        
+        logger.info("Indexing complete: {} indexed, {} updated, {} removed, {} skipped, {} errors in {}ms", 
+            indexed, result.get("updated"), result.get("removed"), result.get("skipped"), errors, duration);
+        
+        return result;
     }
     
-    /**
-     * Check if file is an image
-     */
-    private boolean isImageFile(Path path) {
-        String filename = path.getFileName().toString().toLowerCase();
-        // Skip Mac metadata files
-        if (filename.startsWith("._")) {
-            return false;
-        }
-        // Accept both images and videos
-        return filename.matches(".*\\.(png|jpg|jpeg|gif|webp|mp4|mov|avi|mkv|webm|m4v|wmv)$");
+    private LocalDate toLocalDate(FileTime time) {
+        return time.toInstant()
+            .atZone(ZoneId.systemDefault())
+            .toLocalDate();
     }
     
     /**
@@ -429,6 +468,8 @@ public class MemoriesService {
         if (metadata.isVideo()) {
             map.put("videoDuration", metadata.getVideoDuration());
             map.put("videoResolution", metadata.getVideoResolution());
+            map.put("videoCodec", metadata.getVideoCodec());
+            map.put("videoHasAudio", metadata.getVideoHasAudio());
         }
         
         // Calculate years ago
@@ -439,89 +480,19 @@ public class MemoriesService {
     }
     
     /**
-     * Generate thumbnail for an image
-     * Returns relative path to thumbnail
+     * Generate the thumbnail pyramid for an image (see ThumbnailPyramidService)
+     * Returns relative path to the level used for grids (memories.thumbnail-size)
      */
-    private String generateThumbnail(Path originalPath, String relativePath) throws IOException {
-        // Create thumbnails directory if it doesn't exist
-        Path thumbnailsDir = Paths.get(imageFolder, ".thumbnails");
-        if (!Files.exists(thumbnailsDir)) {
-            Files.createDirectories(thumbnailsDir);
-            logger.info("Created thumbnails directory: {}", thumbnailsDir);
-        }
+    private String generateThumbnail(Path originalPath, String relativePath, int orientation) throws IOException {
+        NavigableMap<Integer, String> levels = thumbnailPyramidService.generate(originalPath, relativePath, orientation);
         
-        // Create thumbnail path maintaining folder structure
-        String thumbnailRelativePath = ".thumbnails/" + relativePath;
-        Path thumbnailPath = Paths.get(imageFolder, thumbnailRelativePath);
-        
-        // Create parent directories if needed
-        Path thumbnailParent = thumbnailPath.getParent();
-        if (thumbnailParent != null && !Files.exists(thumbnailParent)) {
-            Files.createDirectories(thumbnailParent);
-        }
-        
-        // Skip if thumbnail already exists and is newer than original
-        if (Files.exists(thumbnailPath)) {
-            long originalModified = Files.getLastModifiedTime(originalPath).toMillis();
-            long thumbnailModified = Files.getLastModifiedTime(thumbnailPath).toMillis();
-            if (thumbnailModified >= originalModified) {
-                return thumbnailRelativePath;
-            }
-        }
-        
-        // Read original image
-        BufferedImage originalImage = ImageIO.read(originalPath.toFile());
-        if (originalImage == null) {
-            throw new IOException("Could not read image: " + originalPath);
-        }
-        
-        // Calculate thumbnail dimensions maintaining aspect ratio
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
-        int newWidth, newHeight;
-        
-        if (originalWidth > originalHeight) {
-            newWidth = thumbnailSize;
-            newHeight = (int) ((double) originalHeight / originalWidth * thumbnailSize);
-        } else {
-            newHeight = thumbnailSize;
-            newWidth = (int) ((double) originalWidth / originalHeight * thumbnailSize);
-        }
-        
-        // Create thumbnail with high-quality scaling
-        BufferedImage thumbnail = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = thumbnail.createGraphics();
-        
-        // Enable high-quality rendering
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-        g2d.dispose();
-        
-        // Write thumbnail as JPEG with specified quality
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) {
-            throw new IOException("No JPEG writer found");
-        }
-        
-        ImageWriter writer = writers.next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        
-        if (param.canWriteCompressed()) {
-            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(thumbnailQuality / 100f);
-        }
-        
-        try (ImageOutputStream output = ImageIO.createImageOutputStream(thumbnailPath.toFile())) {
-            writer.setOutput(output);
-            writer.write(null, new javax.imageio.IIOImage(thumbnail, null, null), param);
-        } finally {
-            writer.dispose();
+        Map.Entry<Integer, String> level = levels.ceilingEntry(thumbnailSize);
+        if (level == null) {
+            level = levels.lastEntry();
         }
         
-        logger.debug("Generated thumbnail: {} -> {} ({}x{})", relativePath, thumbnailRelativePath, newWidth, newHeight);
+        String thumbnailRelativePath = level != null ? level.getValue() : null;
+        logger.debug("Generated thumbnails: {} -> {} ({} levels)", relativePath, thumbnailRelativePath, levels.size());
         
         return thumbnailRelativePath;
     }
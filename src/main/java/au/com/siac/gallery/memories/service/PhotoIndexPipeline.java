@@ -0,0 +1,307 @@
+package au.com.siac.gallery.memories.service;
+
+import au.com.siac.gallery.memories.entity.PhotoMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Staged indexing pipeline used by MemoriesService.indexAllPhotos
+ *
+ * scan -> extract metadata -> render thumbnail -> batched save
+ *
+ * Each stage has its own worker count and a bounded queue in front of it, so
+ * a slow stage blocks the one before it instead of letting work pile up in
+ * memory. Per-stage item counts and busy time are reported at the end.
+ *
+ * The folders of files that failed (not extracted, not saved) are collected,
+ * so their journal fingerprints aren't saved and the next run retries them.
+ */
+final class PhotoIndexPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoIndexPipeline.class);
+
+    /**
+     * Unit of work passed between stages
+     */
+    private static final class Item {
+        private final String relativePath;
+        // Set for a video whose existing row is only probed again (extract stage only)
+        private final Long reprobeId;
+        private PhotoMetadata metadata;
+
+        private Item(String relativePath, Long reprobeId) {
+            this.relativePath = relativePath;
+            this.reprobeId = reprobeId;
+        }
+    }
+
+    // Poison pill: one per worker tells it its upstream is finished
+    private static final Item END = new Item(null, null);
+
+    /**
+     * Worker threads draining one bounded queue
+     */
+    private static final class Stage {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<Item> input;
+        private final List<Thread> threads = new ArrayList<>();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final Consumer<Item> onFailure;
+
+        private Stage(String name, int workers, int queueCapacity, Consumer<Item> onFailure) {
+            this.name = name;
+            this.onFailure = onFailure;
+            this.workers = Math.max(1, workers);
+            this.input = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        }
+
+        private void start(Consumer<Item> task) {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = Thread.ofPlatform()
+                        .name("memories-index-" + name + "-" + i)
+                        .daemon(true)
+                        .start(() -> run(task));
+                threads.add(thread);
+            }
+        }
+
+        private void run(Consumer<Item> task) {
+            while (true) {
+                Item item;
+                try {
+                    item = input.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (item == END) {
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    task.accept(item);
+                } catch (Throwable t) {
+                    // Drop the item, keep the worker: a dead worker would block put() and finish() forever
+                    logger.error("Index stage {} failed on: {}", name, item.relativePath, t);
+                    onFailure.accept(item);
+                } finally {
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    processed.incrementAndGet();
+                }
+            }
+        }
+
+        private void put(Item item) throws InterruptedException {
+            input.put(item);
+        }
+
+        /**
+         * Signal end of input and wait for every worker to drain
+         */
+        private void finish() throws InterruptedException {
+            for (int i = 0; i < threads.size(); i++) {
+                input.put(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        private Map<String, Object> report(long elapsedMillis) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long items = processed.get();
+            stats.put("workers", workers);
+            stats.put("items", items);
+            stats.put("busy_ms", busyNanos.get() / 1_000_000);
+            stats.put("per_second", elapsedMillis > 0 ? Math.round(items * 1000.0 / elapsedMillis) : items);
+            return stats;
+        }
+    }
+
+    private final MemoriesService memoriesService;
+    private final int batchSize;
+
+    private final Stage extractStage;
+    private final Stage thumbnailStage;
+    private final Stage writeStage;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final Set<String> failedFolders = ConcurrentHashMap.newKeySet();
+
+    // Only touched by the single writer thread
+    private final List<PhotoMetadata> pendingBatch = new ArrayList<>();
+
+    PhotoIndexPipeline(MemoriesService memoriesService, int extractWorkers, int thumbnailWorkers,
+                       int queueCapacity, int batchSize) {
+        this.memoriesService = memoriesService;
+        this.batchSize = Math.max(1, batchSize);
+        this.extractStage = new Stage("extract", extractWorkers, queueCapacity, this::failed);
+        this.thumbnailStage = new Stage("thumbnail", thumbnailWorkers, queueCapacity, this::failed);
+        // A single writer keeps batches whole and avoids duplicate-key races
+        this.writeStage = new Stage("write", 1, Math.max(queueCapacity, this.batchSize), this::failed);
+    }
+
+    /**
+     * Start the workers; the caller then feeds paths with submit() and calls finish()
+     */
+    void start() {
+        extractStage.start(this::extract);
+        thumbnailStage.start(this::thumbnail);
+        writeStage.start(this::write);
+    }
+
+    /**
+     * Queue a file for indexing; blocks while the extract stage is saturated
+     */
+    void submit(String relativePath) throws InterruptedException {
+        scanned.incrementAndGet();
+        extractStage.put(new Item(relativePath, null));
+    }
+
+    /**
+     * Queue an indexed video to be probed again and its row updated in place
+     * (no thumbnail, no new row)
+     */
+    void reprobe(Long id, String relativePath) throws InterruptedException {
+        scanned.incrementAndGet();
+        extractStage.put(new Item(relativePath, id));
+    }
+
+    /**
+     * Drain every stage in order and flush the last batch
+     */
+    void finish() throws InterruptedException {
+        extractStage.finish();
+        thumbnailStage.finish();
+        writeStage.finish();
+        flush();
+    }
+
+    int getIndexed() {
+        return indexed.get();
+    }
+
+    int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Folders ("" for the root) holding a file that was not indexed in this run
+     */
+    Set<String> getFailedFolders() {
+        return failedFolders;
+    }
+
+    Map<String, Object> report(long scanMillis, long elapsedMillis) {
+        Map<String, Object> stages = new LinkedHashMap<>();
+
+        Map<String, Object> scan = new LinkedHashMap<>();
+        scan.put("workers", 1);
+        scan.put("items", scanned.get());
+        scan.put("busy_ms", scanMillis);
+        scan.put("per_second", elapsedMillis > 0 ? Math.round(scanned.get() * 1000.0 / elapsedMillis) : scanned.get());
+        stages.put("scan", scan);
+
+        for (Stage stage : List.of(extractStage, thumbnailStage, writeStage)) {
+            Map<String, Object> stats = stage.report(elapsedMillis);
+            stages.put(stage.name, stats);
+            logger.info("Index stage {}: {} items, {} workers, {}ms busy, {}/s",
+                    stage.name, stats.get("items"), stats.get("workers"), stats.get("busy_ms"), stats.get("per_second"));
+        }
+        return stages;
+    }
+
+    private void extract(Item item) {
+        if (item.reprobeId != null) {
+            memoriesService.reprobeVideo(item.reprobeId, item.relativePath);
+            return;
+        }
+        try {
+            item.metadata = memoriesService.extractMetadata(item.relativePath);
+        } catch (Exception e) {
+            logger.error("Error extracting metadata: {}", item.relativePath, e);
+        }
+        if (item.metadata == null) {
+            failed(item);
+            return;
+        }
+        forward(thumbnailStage, item);
+    }
+
+    private void thumbnail(Item item) {
+        try {
+            memoriesService.attachThumbnail(item.metadata);
+        } catch (Exception e) {
+            // Continue without thumbnail - will fall back to full image
+            logger.warn("Could not generate thumbnail for: {}", item.relativePath, e);
+        }
+        forward(writeStage, item);
+    }
+
+    private void write(Item item) {
+        pendingBatch.add(item.metadata);
+        if (pendingBatch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
+        try {
+            List<PhotoMetadata> unsaved = memoriesService.saveBatch(pendingBatch);
+            indexed.addAndGet(pendingBatch.size() - unsaved.size());
+            for (PhotoMetadata metadata : unsaved) {
+                failed(metadata.getFilePath());
+            }
+        } catch (RuntimeException e) {
+            // Their folders keep the old fingerprint, so the next run retries them
+            logger.error("Error saving batch of {} indexed files", pendingBatch.size(), e);
+            for (PhotoMetadata metadata : pendingBatch) {
+                failed(metadata.getFilePath());
+            }
+        } finally {
+            pendingBatch.clear();
+        }
+    }
+
+    private void forward(Stage next, Item item) {
+        try {
+            next.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed(item);
+        }
+    }
+
+    private void failed(Item item) {
+        if (item.reprobeId != null) {
+            // The row is untouched and still unprobed, so the next run tries again anyway
+            errors.incrementAndGet();
+            return;
+        }
+        failed(item.relativePath);
+    }
+
+    private void failed(String relativePath) {
+        errors.incrementAndGet();
+        failedFolders.add(PhotoMetadata.folderOf(relativePath));
+    }
+}
@@ -1,14 +1,15 @@
 package au.com.siac.gallery.memories.service;
 
+import au.com.siac.gallery.media.service.MediaToolExecutor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 
 /**
  * Service for generating video thumbnails using FFmpeg
@@ -16,9 +17,17 @@ import java.nio.file.Paths;
 @Service
 public class VideoThumbnailService {
     
+    private static final Duration VERSION_CHECK_TIMEOUT = Duration.ofSeconds(10);
+    
     @Value("${image.folder}")
     private String imageFolder;
     
+    private final MediaToolExecutor mediaToolExecutor;
+    
+    public VideoThumbnailService(MediaToolExecutor mediaToolExecutor) {
+        this.mediaToolExecutor = mediaToolExecutor;
+    }
+    
     /**
      * Generate thumbnail for a video file
      * 
@@ -62,43 +71,34 @@ public class VideoThumbnailService {
             
             // Build FFmpeg command
             // Extract frame at 5 seconds, scale to 640px width (maintains aspect ratio)
-            ProcessBuilder processBuilder = new ProcessBuilder(
+            // Runs on the shared media tool pool (bounded, killed on timeout)
+            MediaToolExecutor.Result result = mediaToolExecutor.run(List.of(
                 "ffmpeg",
+                "-ss", "00:00:05",              // Seek to 5 seconds (before -i: no decode from the start)
                 "-i", videoPath.toString(),
-                "-ss", "00:00:05",              // Seek to 5 seconds
                 "-vframes", "1",                 // Extract 1 frame
                 "-vf", "scale=640:-1",          // Scale to 640px width, auto height
                 "-q:v", "2",                     // High quality JPEG
                 thumbnailPath.toString(),
                 "-y"                             // Overwrite if exists
-            );
-            
-            processBuilder.redirectErrorStream(true);
+            ));
             
-            Process process = processBuilder.start();
-            
-            // Read output for debugging
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    // Only log important messages (errors/warnings)
-                    if (line.contains("Error") || line.contains("error") || 
-                        line.contains("Warning") || line.contains("warning")) {
-                        System.out.println("[FFmpeg] " + line);
-                    }
+            // Only log important messages (errors/warnings)
+            for (String line : result.getOutput().split("\n")) {
+                if (line.contains("Error") || line.contains("error") || 
+                    line.contains("Warning") || line.contains("warning")) {
+                    System.out.println("[FFmpeg] " + line);
                 }
             }
             
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0 && Files.exists(thumbnailPath)) {
+            if (result.isSuccess() && Files.exists(thumbnailPath)) {
                 long thumbnailSize = Files.size(thumbnailPath);
                 System.out.println("[VideoThumbnailService] ✅ Thumbnail generated successfully: " + 
                                  thumbnailRelativePath + " (" + (thumbnailSize / 1024) + " KB)");
                 return thumbnailRelativePath;
             } else {
-                System.err.println("[VideoThumbnailService] ❌ FFmpeg failed with exit code: " + exitCode);
+                System.err.println("[VideoThumbnailService] ❌ FFmpeg failed with exit code: " + result.getExitCode()
+                                 + (result.isTimedOut() ? " (timed out)" : ""));
                 return null;
             }
             
@@ -116,10 +116,7 @@ public class VideoThumbnailService {
      */
     public boolean isFFmpegAvailable() {
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder("ffmpeg", "-version");
-            Process process = processBuilder.start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
+            return mediaToolExecutor.run(List.of("ffmpeg", "-version"), VERSION_CHECK_TIMEOUT).isSuccess();
         } catch (Exception e) {
             return false;
         }
@@ -132,14 +129,11 @@ public class VideoThumbnailService {
      */
     public String getFFmpegVersion() {
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder("ffmpeg", "-version");
-            Process process = processBuilder.start();
-            
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String firstLine = reader.readLine();
-                return firstLine != null ? firstLine : "Unknown version";
-            }
+            MediaToolExecutor.Result result = mediaToolExecutor.run(List.of("ffmpeg", "-version"), VERSION_CHECK_TIMEOUT);
+            String output = result.getOutput();
+            int newline = output.indexOf('\n');
+            String firstLine = newline >= 0 ? output.substring(0, newline) : output;
+            return !firstLine.isEmpty() ? firstLine : "Unknown version";
         } catch (Exception e) {
             return null;
         }
@@ -1,19 +1,18 @@
 package au.com.siac.gallery.music.controller;
 
+import au.com.siac.gallery.media.service.FileAttributeCache;
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import au.com.siac.gallery.media.service.MediaStreamingService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.HandlerMapping;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -26,9 +25,19 @@ import java.util.stream.Stream;
 @Controller
 public class MusicController {
 
+    private static final MediaType AUDIO_MPEG = MediaType.parseMediaType("audio/mpeg");
+
     @Value("${music.folder}")
     private String musicFolder;
 
+    private final MediaStreamingService mediaStreamingService;
+    private final FileAttributeCache fileAttributeCache;
+
+    public MusicController(MediaStreamingService mediaStreamingService, FileAttributeCache fileAttributeCache) {
+        this.mediaStreamingService = mediaStreamingService;
+        this.fileAttributeCache = fileAttributeCache;
+    }
+
     @GetMapping("/api/music/list")
     @ResponseBody
     public List<String> getMusicList() throws IOException {
@@ -50,10 +59,12 @@ public class MusicController {
         }
     }
 
+    /**
+     * Stream a track with Range support (seeking, Smart TVs/monitors)
+     * See MediaStreamingService for the 200/206/416 rules
+     */
     @GetMapping("/music/**")
-    public ResponseEntity<Resource> getMusic(
-            HttpServletRequest request,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) throws IOException {
+    public void getMusic(HttpServletRequest request, HttpServletResponse response) throws IOException {
         
         String pathWithinHandler = (String) request.getAttribute(
                 HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
@@ -66,42 +77,15 @@ public class MusicController {
         // Decode URL-encoded path (e.g., %20 becomes space)
         relativePath = URLDecoder.decode(relativePath, StandardCharsets.UTF_8);
 
-        // Use Paths.get with the relative path directly
-        Path filePath = Paths.get(musicFolder).resolve(relativePath);
-
-        if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-            throw new RuntimeException("Music file not found: " + filePath.toAbsolutePath());
-        }
-
-        Resource resource = new UrlResource(filePath.toUri());
-        long fileSize = Files.size(filePath);
-
-        // Handle range requests for streaming (required for many Smart TVs/monitors)
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            String[] ranges = rangeHeader.substring(6).split("-");
-            long start = Long.parseLong(ranges[0]);
-            long end = ranges.length > 1 && !ranges[1].isEmpty() 
-                    ? Long.parseLong(ranges[1]) 
-                    : fileSize - 1;
-
-            long contentLength = end - start + 1;
-
-            InputStream inputStream = Files.newInputStream(filePath);
-            inputStream.skip(start);
+        Path root = Paths.get(musicFolder).toAbsolutePath().normalize();
+        Path filePath = root.resolve(relativePath).normalize();
 
-            return ResponseEntity.status(206) // 206 Partial Content
-                    .header("Content-Type", "audio/mpeg")
-                    .header("Accept-Ranges", "bytes")
-                    .header("Content-Range", "bytes " + start + "-" + end + "/" + fileSize)
-                    .header("Content-Length", String.valueOf(contentLength))
-                    .body(new InputStreamResource(inputStream));
+        FileInfo info = fileAttributeCache.get(filePath);
+        if (!filePath.startsWith(root) || !info.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        // Normal response (full file)
-        return ResponseEntity.ok()
-                .header("Content-Type", "audio/mpeg")
-                .header("Accept-Ranges", "bytes")
-                .header("Content-Length", String.valueOf(fileSize))
-                .body(resource);
+        mediaStreamingService.stream(request, response, filePath, info, AUDIO_MPEG);
     }
 }
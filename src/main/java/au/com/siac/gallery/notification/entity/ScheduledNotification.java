@@ -0,0 +1,115 @@
+package au.com.siac.gallery.notification.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One notification due for one event: the (event, timing) pair with the
+ * moment it should go out, worked out once when the event is saved
+ */
+@Entity
+@Table(name = "scheduled_notifications", indexes = {
+    @Index(name = "idx_scheduled_notifications_status_fire_at", columnList = "status, fire_at"),
+    @Index(name = "idx_scheduled_notifications_event_id", columnList = "event_id")
+})
+public class ScheduledNotification {
+
+    public static final String PENDING = "PENDING";
+    public static final String FIRED = "FIRED";
+    public static final String MISSED = "MISSED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(nullable = false, name = "event_id")
+    private Long eventId;
+
+    @Column(nullable = false, name = "notification_timing", length = 50)
+    private String notificationTiming;  // "1_day_before", "1_hour_before", etc.
+
+    @Column(nullable = false, name = "fire_at")
+    private LocalDateTime fireAt;
+
+    @Column(nullable = false, length = 20)
+    private String status;  // "PENDING", "FIRED", "MISSED"
+
+    @Column(name = "fired_at")
+    private LocalDateTime firedAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public ScheduledNotification() {
+    }
+
+    public ScheduledNotification(Long eventId, String notificationTiming, LocalDateTime fireAt) {
+        this.eventId = eventId;
+        this.notificationTiming = notificationTiming;
+        this.fireAt = fireAt;
+        this.status = PENDING;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getNotificationTiming() {
+        return notificationTiming;
+    }
+
+    public void setNotificationTiming(String notificationTiming) {
+        this.notificationTiming = notificationTiming;
+    }
+
+    public LocalDateTime getFireAt() {
+        return fireAt;
+    }
+
+    public void setFireAt(LocalDateTime fireAt) {
+        this.fireAt = fireAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getFiredAt() {
+        return firedAt;
+    }
+
+    public void setFiredAt(LocalDateTime firedAt) {
+        this.firedAt = firedAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,48 @@
+package au.com.siac.gallery.notification.repository;
+
+import au.com.siac.gallery.notification.entity.ScheduledNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ScheduledNotificationRepository extends JpaRepository<ScheduledNotification, Long> {
+
+    /**
+     * Rows with a status due up to a time, soonest first (uses the status/fire_at index)
+     */
+    List<ScheduledNotification> findByStatusAndFireAtLessThanEqualOrderByFireAtAsc(String status, LocalDateTime until);
+
+    /**
+     * Whether an event has been scheduled at all
+     */
+    boolean existsByEventId(Long eventId);
+
+    /**
+     * Drop everything scheduled for an event (before rescheduling it, or when it is deleted)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ScheduledNotification s WHERE s.eventId = :eventId")
+    int deleteByEventId(@Param("eventId") Long eventId);
+
+    /**
+     * Move a row out of PENDING; 0 if it was already handled or rescheduled away
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScheduledNotification s SET s.status = :status, s.firedAt = :firedAt " +
+           "WHERE s.id = :id AND s.status = 'PENDING'")
+    int updatePendingStatus(@Param("id") Long id, @Param("status") String status, @Param("firedAt") LocalDateTime firedAt);
+
+    /**
+     * Count rows by status
+     */
+    long countByStatus(String status);
+}
@@ -2,147 +2,300 @@ package au.com.siac.gallery.notification.service;
 
 import au.com.siac.gallery.events.entity.Event;
 import au.com.siac.gallery.events.repository.EventRepository;
+import au.com.siac.gallery.notification.entity.ScheduledNotification;
+import au.com.siac.gallery.notification.repository.ScheduledNotificationRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDate;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Notification Scheduler
- * Runs every minute to check for events that need notifications
+ * Sends each event notification when it falls due
+ *
+ * Every (event, timing) pair is written to scheduled_notifications with its
+ * fire_at time whenever the event is saved. Rows due within the next couple
+ * of load intervals are read through the (status, fire_at) index and held in
+ * a DelayQueue; a single thread takes each one the moment it is due, so the
+ * work done is proportional to the notifications going out, not to the
+ * number of events.
+ *
+ * Rows still PENDING after a restart (or a long pause) are picked up by the
+ * first load and sent late, as long as they are within
+ * notifications.scheduler.catch-up-hours and the event isn't over yet;
+ * otherwise they are marked MISSED.
  */
 @Service
 public class NotificationScheduler {
-    
+
+    private static final LocalTime MORNING = LocalTime.of(9, 0);
+
+    // Later than this counts as a catch-up rather than an on-time send
+    private static final Duration LATE_AFTER = Duration.ofMinutes(1);
+
+    @Value("${notifications.scheduler.load-interval-minutes:15}")
+    private long loadIntervalMinutes;
+
+    @Value("${notifications.scheduler.catch-up-hours:24}")
+    private long catchUpHours;
+
     @Autowired
     private EventRepository eventRepository;
-    
+
+    @Autowired
+    private ScheduledNotificationRepository scheduledRepository;
+
     @Autowired
     private NotificationService notificationService;
-    
+
+    private final DelayQueue<Due> queue = new DelayQueue<>();
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private Thread dispatchThread;
+    private volatile boolean running;
+
     /**
-     * Check for notifications every minute
-     * Runs at the top of each minute (0 seconds)
+     * Schedule events saved before scheduled_notifications existed, then start sending
      */
-    @Scheduled(cron = "0 * * * * *")
-    @Transactional
-    public void checkPendingNotifications() {
-        System.out.println("[NotificationScheduler] Checking for pending notifications at " + LocalDateTime.now());
-        
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
         try {
-            // Get all events with notifications enabled that are not completed
-            List<Event> events = eventRepository.findAll().stream()
-                .filter(event -> event != null && event.getNotificationsEnabled() && !event.getCompleted())
-                .toList();
-            
-            System.out.println("[NotificationScheduler] Found " + events.size() + " events with notifications enabled");
-            
-            for (Event event : events) {
-                checkEventNotifications(event);
+            int scheduled = 0;
+            for (Event event : eventRepository.findUpcomingEvents(LocalDateTime.now())) {
+                if (isSchedulable(event) && !scheduledRepository.existsByEventId(event.getId())) {
+                    schedule(event);
+                    scheduled++;
+                }
+            }
+            if (scheduled > 0) {
+                System.out.println("[NotificationScheduler] Scheduled notifications for " + scheduled + " existing events");
             }
+            loadDue();
         } catch (Exception e) {
-            System.err.println("[NotificationScheduler] Error checking notifications: " + e.getMessage());
+            System.err.println("[NotificationScheduler] Error preparing schedule: " + e.getMessage());
         }
+
+        running = true;
+        dispatchThread = new Thread(this::dispatch, "notification-scheduler");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
     }
-    
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatchThread != null) {
+            dispatchThread.interrupt();
+        }
+    }
+
+    /**
+     * Queue the rows due before the next load (and any overdue ones)
+     */
+    @Scheduled(fixedDelayString = "${notifications.scheduler.load-interval-minutes:15}", timeUnit = TimeUnit.MINUTES)
+    public void loadDue() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduledNotification> due = scheduledRepository.findByStatusAndFireAtLessThanEqualOrderByFireAtAsc(
+            ScheduledNotification.PENDING, horizon(now));
+
+        long overdue = due.stream().filter(row -> row.getFireAt().isBefore(now.minus(LATE_AFTER))).count();
+        if (overdue > 0) {
+            System.out.println("[NotificationScheduler] Catching up " + overdue + " overdue notifications");
+        }
+        due.forEach(this::enqueue);
+    }
+
     /**
-     * Check if an event needs any notifications sent
+     * Replace an event's scheduled notifications after it is created or changed
+     * Only timings still in the future are scheduled
      */
-    private void checkEventNotifications(Event event) {
-        // Parse notification timings
-        List<String> timings = parseTimings(event.getNotificationTimings());
-        
-        if (timings.isEmpty()) {
+    public void schedule(Event event) {
+        scheduledRepository.deleteByEventId(event.getId());
+        if (!isSchedulable(event)) {
             return;
         }
-        
-        LocalDateTime eventDateTime = event.getEventStartDatetime();
+
         LocalDateTime now = LocalDateTime.now();
-        
-        for (String timing : timings) {
-            if (shouldSendNotification(timing, eventDateTime, now)) {
-                System.out.println("[NotificationScheduler] Sending " + timing + " notification for: " + event.getTitle());
-                notificationService.sendNotification(event, timing);
+        List<ScheduledNotification> rows = new ArrayList<>();
+        for (String timing : parseTimings(event.getNotificationTimings())) {
+            LocalDateTime fireAt = fireTime(timing, event.getEventStartDatetime());
+            if (fireAt != null && fireAt.isAfter(now)) {
+                rows.add(new ScheduledNotification(event.getId(), timing, fireAt));
             }
         }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        List<ScheduledNotification> saved = scheduledRepository.saveAll(rows);
+        // Queue once the rows are visible to the dispatch thread
+        afterCommit(() -> saved.forEach(this::enqueue));
+    }
+
+    /**
+     * Drop an event's scheduled notifications (queued entries are skipped when taken)
+     */
+    public void cancel(Long eventId) {
+        scheduledRepository.deleteByEventId(eventId);
     }
-    
+
     /**
-     * Determine if a notification should be sent based on timing
+     * Take rows off the queue as they fall due
      */
-    private boolean shouldSendNotification(String timing, LocalDateTime eventDateTime, LocalDateTime now) {
-        LocalDate today = now.toLocalDate();
-        LocalTime currentTime = now.toLocalTime();
-        LocalDate eventDate = eventDateTime.toLocalDate();
-        
+    private void dispatch() {
+        while (running) {
+            Due due;
+            try {
+                // Bounded wait, so a wall-clock change is noticed within a minute
+                due = queue.poll(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (due == null) {
+                continue;
+            }
+            queued.remove(due.id);
+            try {
+                fire(due.id);
+            } catch (Exception e) {
+                System.err.println("[NotificationScheduler] Error sending notification " + due.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void fire(Long id) {
+        ScheduledNotification row = scheduledRepository.findById(id).orElse(null);
+        if (row == null || !ScheduledNotification.PENDING.equals(row.getStatus())) {
+            // Rescheduled, cancelled or already sent since it was queued
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Event event = eventRepository.findById(row.getEventId()).orElse(null);
+        boolean late = row.getFireAt().plus(LATE_AFTER).isBefore(now);
+        if (event == null || !isSchedulable(event) || (late && !canCatchUp(row, event, now))) {
+            scheduledRepository.updatePendingStatus(id, ScheduledNotification.MISSED, null);
+            System.out.println("[NotificationScheduler] Skipping " + row.getNotificationTiming()
+                + " notification for event " + row.getEventId());
+            return;
+        }
+
+        // Claim the row first so it is never sent twice
+        if (scheduledRepository.updatePendingStatus(id, ScheduledNotification.FIRED, now) == 0) {
+            return;
+        }
+        System.out.println("[NotificationScheduler] Sending " + row.getNotificationTiming() + " notification for: "
+            + event.getTitle() + (late ? " (due " + row.getFireAt() + ")" : ""));
+        notificationService.sendNotification(event, row.getNotificationTiming());
+    }
+
+    /**
+     * A missed notification is still worth sending if it's recent and the event isn't over
+     */
+    private boolean canCatchUp(ScheduledNotification row, Event event, LocalDateTime now) {
+        LocalDateTime end = event.getEventEndDatetime() != null
+            ? event.getEventEndDatetime() : event.getEventStartDatetime();
+        return row.getFireAt().plusHours(catchUpHours).isAfter(now) && end.isAfter(now);
+    }
+
+    private void enqueue(ScheduledNotification row) {
+        if (row.getFireAt().isAfter(horizon(LocalDateTime.now()))) {
+            // Picked up by a later load
+            return;
+        }
+        if (queued.add(row.getId())) {
+            queue.add(new Due(row.getId(), row.getFireAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        }
+    }
+
+    /**
+     * Rows up to two loads ahead are queued, so none fall between loads
+     */
+    private LocalDateTime horizon(LocalDateTime now) {
+        return now.plusMinutes(2 * Math.max(1, loadIntervalMinutes));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static boolean isSchedulable(Event event) {
+        return event != null
+            && Boolean.TRUE.equals(event.getNotificationsEnabled())
+            && !Boolean.TRUE.equals(event.getCompleted())
+            && event.getEventStartDatetime() != null;
+    }
+
+    /**
+     * When a timing falls due for an event; null for an unknown timing
+     */
+    private static LocalDateTime fireTime(String timing, LocalDateTime eventDateTime) {
         switch (timing) {
             case "1_week_before":
-                // Send 1 week before at 9 AM
-                LocalDate weekBefore = eventDate.minusWeeks(1);
-                return today.equals(weekBefore) && 
-                       currentTime.getHour() == 9 && 
-                       currentTime.getMinute() == 0;
-                
+                // 1 week before at 9 AM
+                return eventDateTime.toLocalDate().minusWeeks(1).atTime(MORNING);
+
             case "3_days_before":
-                // Send 3 days before at 9 AM
-                LocalDate threeDaysBefore = eventDate.minusDays(3);
-                return today.equals(threeDaysBefore) && 
-                       currentTime.getHour() == 9 && 
-                       currentTime.getMinute() == 0;
-                
+                // 3 days before at 9 AM
+                return eventDateTime.toLocalDate().minusDays(3).atTime(MORNING);
+
             case "1_day_before":
-                // Send 1 day before at 9 AM
-                LocalDate oneDayBefore = eventDate.minusDays(1);
-                return today.equals(oneDayBefore) && 
-                       currentTime.getHour() == 9 && 
-                       currentTime.getMinute() == 0;
-                
+                // 1 day before at 9 AM
+                return eventDateTime.toLocalDate().minusDays(1).atTime(MORNING);
+
             case "morning_of":
-                // Send on event day at 9 AM
-                return today.equals(eventDate) && 
-                       currentTime.getHour() == 9 && 
-                       currentTime.getMinute() == 0;
-                
+                // Event day at 9 AM
+                return eventDateTime.toLocalDate().atTime(MORNING);
+
             case "1_hour_before":
-                // Send 1 hour before event time
-                LocalDateTime oneHourBefore = eventDateTime.minusHours(1);
-                
-                // Check if we're within the same minute as 1 hour before
-                return now.toLocalDate().equals(oneHourBefore.toLocalDate()) &&
-                       now.getHour() == oneHourBefore.getHour() &&
-                       now.getMinute() == oneHourBefore.getMinute();
-                
+                return eventDateTime.minusHours(1);
+
             case "30_mins_before":
-                // Send 30 minutes before event time
-                LocalDateTime thirtyMinsBefore = eventDateTime.minusMinutes(30);
-                
-                // Check if we're within the same minute as 30 mins before
-                return now.toLocalDate().equals(thirtyMinsBefore.toLocalDate()) &&
-                       now.getHour() == thirtyMinsBefore.getHour() &&
-                       now.getMinute() == thirtyMinsBefore.getMinute();
-                
+                return eventDateTime.minusMinutes(30);
+
             default:
-                return false;
+                return null;
         }
     }
-    
+
     /**
      * Parse notification timings from JSON string
      * Simple parser - expects format: ["timing1","timing2"]
      */
-    private List<String> parseTimings(String timingsJson) {
+    private static Set<String> parseTimings(String timingsJson) {
         if (timingsJson == null || timingsJson.isEmpty()) {
-            return new ArrayList<>();
+            return Set.of();
         }
-        
+
         try {
             // Remove brackets and quotes: ["1_day_before","1_hour_before"] -> 1_day_before,1_hour_before
             String cleaned = timingsJson
@@ -151,20 +304,44 @@ public class NotificationScheduler {
                 .replace("\"", "")
                 .replace("'", "")
                 .trim();
-            
+
             if (cleaned.isEmpty()) {
-                return new ArrayList<>();
+                return Set.of();
             }
-            
+
             // Split by comma and trim
             return Arrays.stream(cleaned.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
-                
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
         } catch (Exception e) {
             System.err.println("[NotificationScheduler] Error parsing timings: " + e.getMessage());
-            return new ArrayList<>();
+            return Set.of();
+        }
+    }
+
+    /**
+     * A queued row; the delay follows the wall clock, as fire_at does
+     */
+    private static final class Due implements Delayed {
+
+        private final Long id;
+        private final long fireAtMillis;
+
+        private Due(Long id, long fireAtMillis) {
+            this.id = id;
+            this.fireAtMillis = fireAtMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAtMillis, ((Due) other).fireAtMillis);
         }
     }
 }
@@ -1,11 +1,20 @@
 package au.com.siac.gallery.slideshow.controller;
 
+import au.com.siac.gallery.media.service.FileAttributeCache;
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import au.com.siac.gallery.media.service.ImageDerivativeService;
+import au.com.siac.gallery.media.service.MediaCatalogService;
+import au.com.siac.gallery.media.service.ThumbnailPyramidService;
+import au.com.siac.gallery.media.util.ThumbnailEncoder;
+import au.com.siac.gallery.media.util.ThumbnailEncoders;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.servlet.HandlerMapping;
@@ -13,15 +22,13 @@ import org.springframework.web.servlet.HandlerMapping;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Controller
 public class ImageController {
@@ -29,10 +36,33 @@ public class ImageController {
     @Value("${image.folder}")
     private String imageFolder;
 
-    private static final String SESSION_IMAGE_QUEUE = "imageQueue";
-    private static final String SESSION_SHOWN_IMAGES = "shownImages";
+    private static final String SESSION_QUEUE = "slideshowQueue";
     private static final String SESSION_REQUEST_PARAMS = "requestParams";
-    private static final String SESSION_ALL_IMAGES = "allImages";
+
+    private final MediaCatalogService mediaCatalogService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ThumbnailPyramidService thumbnailPyramidService;
+    private final ThumbnailEncoders thumbnailEncoders;
+    private final FileAttributeCache fileAttributeCache;
+
+    private final CacheControl originalCacheControl;
+    private final CacheControl thumbnailCacheControl;
+
+    public ImageController(MediaCatalogService mediaCatalogService,
+                           ImageDerivativeService imageDerivativeService,
+                           ThumbnailPyramidService thumbnailPyramidService,
+                           ThumbnailEncoders thumbnailEncoders,
+                           FileAttributeCache fileAttributeCache,
+                           @Value("${media.cache.originals.max-age:86400}") long originalsMaxAge,
+                           @Value("${media.cache.thumbnails.max-age:604800}") long thumbnailsMaxAge) {
+        this.mediaCatalogService = mediaCatalogService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.thumbnailPyramidService = thumbnailPyramidService;
+        this.thumbnailEncoders = thumbnailEncoders;
+        this.fileAttributeCache = fileAttributeCache;
+        this.originalCacheControl = CacheControl.maxAge(Duration.ofSeconds(originalsMaxAge)).cachePublic();
+        this.thumbnailCacheControl = CacheControl.maxAge(Duration.ofSeconds(thumbnailsMaxAge)).cachePublic();
+    }
 
     // Request DTO for image list
     public static class ImageListRequest {
@@ -75,6 +105,76 @@ public class ImageController {
         }
     }
 
+    /**
+     * Per-session slideshow state kept as indexes into a shared catalog snapshot
+     * A cycle is an int permutation of catalog indexes consumed through a cursor;
+     * shown images are tracked in a bitset, so a session costs a few bytes per image
+     * and next/peek never shift or copy the queue
+     */
+    public static class SlideshowQueue {
+        private final MediaCatalogService.Catalog catalog;
+        private final int[] order;
+        private final BitSet shown;
+        private int cursor;
+        private int shownCount;
+
+        public SlideshowQueue(MediaCatalogService.Catalog catalog, int[] order) {
+            this.catalog = catalog;
+            this.order = order;
+            this.shown = new BitSet(catalog.size());
+        }
+
+        public int size() { return order.length; }
+
+        public synchronized int getShownCount() { return shownCount; }
+
+        public synchronized int getRemaining() { return order.length - cursor; }
+
+        public synchronized boolean hasRemaining() { return cursor < order.length; }
+
+        /**
+         * Consume the next image, or null when the cycle is finished
+         * (checked under the same lock, so concurrent requests can't run past the end)
+         */
+        public synchronized String next() {
+            if (cursor >= order.length) {
+                return null;
+            }
+            int index = order[cursor++];
+            if (!shown.get(index)) {
+                shown.set(index);
+                shownCount++;
+            }
+            return catalog.getPath(index);
+        }
+
+        /**
+         * Upcoming images without consuming them
+         */
+        public synchronized List<String> peek(int count) {
+            int end = (int) Math.min((long) cursor + Math.max(count, 0), order.length);
+            List<String> upcoming = new ArrayList<>(end - cursor);
+            for (int i = cursor; i < end; i++) {
+                upcoming.add(catalog.getPath(order[i]));
+            }
+            return upcoming;
+        }
+
+        /**
+         * Every image has been shown once - replay the same order
+         * Returns false if the cycle isn't finished (e.g. another request already restarted it)
+         */
+        public synchronized boolean startNewCycle() {
+            if (cursor < order.length || shownCount == 0) {
+                return false;
+            }
+            shown.clear();
+            shownCount = 0;
+            cursor = 0;
+            return true;
+        }
+    }
+
     @GetMapping("/")
     public String index() {
         return "index";
@@ -82,175 +182,73 @@ public class ImageController {
 
     @GetMapping("/api/folders/list")
     @ResponseBody
-    public List<String> getFolderList() throws IOException {
-        Path folderPath = Paths.get(imageFolder);
-
-        // Get all directories recursively that have direct images
-        try (Stream<Path> paths = Files.walk(folderPath)) {
-            List<Path> foldersWithDirectImages = paths
-                    .filter(Files::isDirectory)
-                    .filter(p -> !p.equals(folderPath))
-                    .filter(this::isNotThumbnailFolder)  // Exclude .thumbnails folder
-                    .filter(this::hasImagesDirectly)
-                    .collect(Collectors.toList());
-            
-            // Convert to relative paths and return
-            List<String> folders = foldersWithDirectImages.stream()
-                    .map(folderPath::relativize)
-                    .map(Path::toString)
-                    .map(p -> p.replace("\\", "/"))
-                    .sorted()
-                    .collect(Collectors.toList());
-            
-            return folders;
-        }
-    }
-
-    // Helper method to check if a folder DIRECTLY contains images (not in subfolders)
-    private boolean hasImagesDirectly(Path folder) {
-        try {
-            List<Path> allFiles = new ArrayList<>();
-            try (Stream<Path> files = Files.list(folder)) {
-                allFiles = files.collect(Collectors.toList());
-            }
-            
-            String relativePath = Paths.get(imageFolder).relativize(folder).toString().replace("\\", "/");
-            
-            // Filter for image files (excluding Mac metadata files starting with ._ )
-            List<Path> imageFiles = allFiles.stream()
-                    .filter(Files::isRegularFile)
-                    .filter(f -> {
-                        String filename = f.getFileName().toString();
-                        // Skip Mac metadata files
-                        if (filename.startsWith("._")) {
-                            return false;
-                        }
-                        String filenameLower = filename.toLowerCase();
-                        return filenameLower.matches(".*\\.(png|jpg|jpeg|gif|webp|mp4|mov|avi|mkv|webm|m4v|wmv)$");
-                    })
-                    .collect(Collectors.toList());
-            
-            return !imageFiles.isEmpty();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+    public List<String> getFolderList() {
+        // Folders that directly contain images, answered from the in-memory catalog
+        return mediaCatalogService.getFoldersWithMedia();
     }
 
     @PostMapping("/api/images/list")
     @ResponseBody
-    public List<String> getImageList(@RequestBody ImageListRequest request, HttpSession session) throws IOException {
+    public List<String> getImageList(@RequestBody ImageListRequest request, HttpSession session) {
         // Check if parameters have changed - if so, reset session
         ImageListRequest previousRequest = (ImageListRequest) session.getAttribute(SESSION_REQUEST_PARAMS);
         if (previousRequest == null || !previousRequest.equals(request)) {
-            session.removeAttribute(SESSION_IMAGE_QUEUE);
-            session.removeAttribute(SESSION_SHOWN_IMAGES);
-            session.removeAttribute(SESSION_ALL_IMAGES);
+            session.removeAttribute(SESSION_QUEUE);
             session.setAttribute(SESSION_REQUEST_PARAMS, request);
         }
 
         // Get or initialize the image queue
-        @SuppressWarnings("unchecked")
-        List<String> imageQueue = (List<String>) session.getAttribute(SESSION_IMAGE_QUEUE);
-        
-        @SuppressWarnings("unchecked")
-        Set<String> shownImages = (Set<String>) session.getAttribute(SESSION_SHOWN_IMAGES);
+        SlideshowQueue queue = (SlideshowQueue) session.getAttribute(SESSION_QUEUE);
         
-        @SuppressWarnings("unchecked")
-        List<String> allImages = (List<String>) session.getAttribute(SESSION_ALL_IMAGES);
-        
-        if (imageQueue == null || imageQueue.isEmpty()) {
+        if (queue == null || !queue.hasRemaining()) {
             // Generate new queue
-            imageQueue = generateImageList(request);
-            allImages = new ArrayList<>(imageQueue);
-            shownImages = new HashSet<>();
-            
-            session.setAttribute(SESSION_IMAGE_QUEUE, new ArrayList<>(imageQueue));
-            session.setAttribute(SESSION_ALL_IMAGES, allImages);
-            session.setAttribute(SESSION_SHOWN_IMAGES, shownImages);
+            queue = generateQueue(request);
+            session.setAttribute(SESSION_QUEUE, queue);
         }
 
-        return new ArrayList<>(imageQueue);
+        return queue.peek(Integer.MAX_VALUE);
     }
 
     @PostMapping("/api/images/next")
     @ResponseBody
-    public Map<String, Object> getNextImage(@RequestBody ImageListRequest request, HttpSession session) throws IOException {
-        @SuppressWarnings("unchecked")
-        List<String> imageQueue = (List<String>) session.getAttribute(SESSION_IMAGE_QUEUE);
-        
-        @SuppressWarnings("unchecked")
-        Set<String> shownImages = (Set<String>) session.getAttribute(SESSION_SHOWN_IMAGES);
-        
-        @SuppressWarnings("unchecked")
-        List<String> allImages = (List<String>) session.getAttribute(SESSION_ALL_IMAGES);
+    public Map<String, Object> getNextImage(@RequestBody ImageListRequest request, HttpSession session) {
+        SlideshowQueue queue = (SlideshowQueue) session.getAttribute(SESSION_QUEUE);
 
         Map<String, Object> response = new HashMap<>();
 
+        // Get next image from queue
+        String nextImage = queue != null ? queue.next() : null;
+
         // If queue is empty but we have shown images, it means cycle is complete
-        if ((imageQueue == null || imageQueue.isEmpty()) && shownImages != null && !shownImages.isEmpty()) {
-            // Regenerate queue with remaining images (those not shown)
-            if (allImages == null) {
-                allImages = generateImageList(request);
-                session.setAttribute(SESSION_ALL_IMAGES, allImages);
-            }
-            
-            // Create new queue from images not yet shown
-            imageQueue = new ArrayList<>();
-            for (String img : allImages) {
-                if (!shownImages.contains(img)) {
-                    imageQueue.add(img);
-                }
-            }
-            
-            // If all images have been shown, reset and start new cycle
-            if (imageQueue.isEmpty()) {
-                System.out.println("🔄 CYCLE COMPLETE - All " + shownImages.size() + " images shown once. Starting new cycle.");
-                shownImages.clear();
-                imageQueue = new ArrayList<>(allImages);
+        if (nextImage == null && queue != null) {
+            int shownCount = queue.getShownCount();
+            if (queue.startNewCycle()) {
+                System.out.println("🔄 CYCLE COMPLETE - All " + shownCount + " images shown once. Starting new cycle.");
                 response.put("cycleComplete", true);
-            } else {
-                System.out.println("⚠️ Queue rebuilt: " + imageQueue.size() + " remaining, " + shownImages.size() + " already shown");
             }
-            
-            session.setAttribute(SESSION_IMAGE_QUEUE, imageQueue);
-            session.setAttribute(SESSION_SHOWN_IMAGES, shownImages);
+            nextImage = queue.next();
         }
 
-        if (imageQueue == null || imageQueue.isEmpty()) {
+        if (nextImage == null) {
             response.put("image", null);
             response.put("hasMore", false);
             response.put("cycleComplete", true);
             return response;
         }
 
-        // Get next image from queue
-        String nextImage = imageQueue.remove(0);
-        
-        // VERIFICATION: Check if image was already shown (should NEVER happen)
-        if (shownImages.contains(nextImage)) {
-            System.err.println("❌ ERROR: Duplicate image detected!");
-            System.err.println("   Image: " + nextImage);
-            System.err.println("   Already shown: " + shownImages.size() + " images");
-            System.err.println("   Queue size: " + imageQueue.size());
-        }
-        
-        shownImages.add(nextImage);
-
         // Update session
-        session.setAttribute(SESSION_IMAGE_QUEUE, imageQueue);
-        session.setAttribute(SESSION_SHOWN_IMAGES, shownImages);
+        session.setAttribute(SESSION_QUEUE, queue);
         
         // Log progress every 10 images
-        int totalImages = allImages != null ? allImages.size() : 0;
-        if (totalImages > 0 && shownImages.size() % 10 == 0) {
-            System.out.println("📊 Slideshow progress: " + shownImages.size() + "/" + totalImages + " images shown");
+        int totalImages = queue.size();
+        if (totalImages > 0 && queue.getShownCount() % 10 == 0) {
+            System.out.println("📊 Slideshow progress: " + queue.getShownCount() + "/" + totalImages + " images shown");
         }
 
         response.put("image", nextImage);
-        response.put("hasMore", !imageQueue.isEmpty());
-        response.put("remaining", imageQueue.size());
-        response.put("totalShown", shownImages.size());
+        response.put("hasMore", queue.hasRemaining());
+        response.put("remaining", queue.getRemaining());
+        response.put("totalShown", queue.getShownCount());
         response.put("totalImages", totalImages);
         response.put("cycleComplete", false);
 
@@ -265,10 +263,9 @@ public class ImageController {
     @PostMapping("/api/images/peek")
     @ResponseBody
     public List<String> peekImages(@RequestBody Map<String, Object> request, HttpSession session) {
-        @SuppressWarnings("unchecked")
-        List<String> imageQueue = (List<String>) session.getAttribute(SESSION_IMAGE_QUEUE);
+        SlideshowQueue queue = (SlideshowQueue) session.getAttribute(SESSION_QUEUE);
         
-        if (imageQueue == null || imageQueue.isEmpty()) {
+        if (queue == null || !queue.hasRemaining()) {
             return new ArrayList<>();
         }
         
@@ -288,143 +285,137 @@ public class ImageController {
         }
         
         // Return next N images without removing from queue
-        int returnCount = Math.min(count, imageQueue.size());
-        return new ArrayList<>(imageQueue.subList(0, returnCount));
+        return queue.peek(count);
     }
     @PostMapping("/api/images/reset")
     @ResponseBody
     public Map<String, String> resetImageSession(HttpSession session) {
-        session.removeAttribute(SESSION_IMAGE_QUEUE);
-        session.removeAttribute(SESSION_SHOWN_IMAGES);
+        session.removeAttribute(SESSION_QUEUE);
         session.removeAttribute(SESSION_REQUEST_PARAMS);
-        session.removeAttribute(SESSION_ALL_IMAGES);
         
         Map<String, String> response = new HashMap<>();
         response.put("status", "reset");
         return response;
     }
 
-    private List<String> generateImageList(ImageListRequest request) throws IOException {
+    private SlideshowQueue generateQueue(ImageListRequest request) {
         String startFolder = request.getStartFolder();
         boolean randomize = request.isRandomize();
         boolean shuffleAll = request.isShuffleAll();
         List<String> selectedFolders = request.getSelectedFolders();
         boolean excludeVideos = request.isExcludeVideos();
-        
-        Path folderPath = Paths.get(imageFolder);
-
-        // Collect all image files
-        List<Path> allImages;
-        try (Stream<Path> paths = Files.walk(folderPath)) {
-            Stream<Path> filteredPaths = paths
-                    .filter(this::isNotThumbnailFolder)  // Exclude .thumbnails folder
-                    .filter(Files::isRegularFile)
-                    .filter(f -> f.getFileName().toString().toLowerCase()
-                            .matches(".*\\.(png|jpg|jpeg|gif|webp|mp4|mov|avi|mkv|webm|m4v|wmv)$"));
-            
-            // Exclude videos if requested
-            if (excludeVideos) {
-                filteredPaths = filteredPaths.filter(f -> !f.getFileName().toString().toLowerCase()
-                        .matches(".*\\.(mp4|mov|avi|mkv|webm|m4v|wmv)$"));
-            }
-            
-            allImages = filteredPaths.collect(Collectors.toList());
-        }
+        boolean hasSelection = selectedFolders != null && !selectedFolders.isEmpty();
 
-        // Filter by selected folders if provided
-        if (selectedFolders != null && !selectedFolders.isEmpty()) {
-            Set<Path> selectedFolderPaths = selectedFolders.stream()
-                    .map(folder -> Paths.get(imageFolder, folder))
-                    .collect(Collectors.toSet());
-            
-            allImages = allImages.stream()
-                    .filter(image -> selectedFolderPaths.contains(image.getParent()))
-                    .collect(Collectors.toList());
-        }
+        MediaCatalogService.Catalog catalog = mediaCatalogService.getCatalog();
 
-        // If shuffleAll is true, just shuffle everything and return
-        if (shuffleAll) {
-            List<String> result = allImages.stream()
-                    .map(folderPath::relativize)
-                    .map(Path::toString)
-                    .map(p -> p.replace("\\", "/"))
-                    .collect(Collectors.toList());
-            Collections.shuffle(result);
-            return result;
-        }
-
-        // Group images by their immediate parent folder
-        Map<Path, List<Path>> imagesByFolder = allImages.stream()
-                .collect(Collectors.groupingBy(Path::getParent));
-
-        // Get list of folders
-        List<Path> folders = new ArrayList<>();
+        // Get list of folders (as catalog folder indexes)
+        List<Integer> folders = new ArrayList<>();
         
         // If selectedFolders is provided and not empty, use that order
-        if (selectedFolders != null && !selectedFolders.isEmpty()) {
+        if (hasSelection) {
+            Set<Integer> seen = new HashSet<>();
             for (String folder : selectedFolders) {
-                Path folderFullPath = Paths.get(imageFolder, folder);
-                if (imagesByFolder.containsKey(folderFullPath)) {
-                    folders.add(folderFullPath);
+                int folderIndex = catalog.indexOfFolder(folder);
+                if (folderIndex >= 0 && seen.add(folderIndex)) {
+                    folders.add(folderIndex);
                 }
             }
         } else {
             // Otherwise use all folders with images
-            folders = new ArrayList<>(imagesByFolder.keySet());
-            folders.sort(Comparator.comparing(Path::toString));
+            for (int i = 0; i < catalog.getFolders().size(); i++) {
+                folders.add(i);
+            }
+        }
+
+        // Play order as catalog indexes
+        int[] order = new int[catalog.size()];
+        int count = 0;
+
+        // If shuffleAll is true, just shuffle everything and return
+        if (shuffleAll) {
+            for (int folderIndex : folders) {
+                count = addFolderImages(catalog, folderIndex, excludeVideos, order, count);
+            }
+            shuffle(order, 0, count);
+            return new SlideshowQueue(catalog, Arrays.copyOf(order, count));
         }
 
         // If startFolder is specified, move it to the front
         if (startFolder != null && !startFolder.isEmpty()) {
-            Path startFolderPath = Paths.get(imageFolder, startFolder);
+            Integer startFolderIndex = catalog.indexOfFolder(startFolder);
             
             // Remove the start folder from the list if it exists
-            folders.removeIf(folder -> folder.equals(startFolderPath));
+            folders.remove(startFolderIndex);
             
             // Shuffle remaining folders if selectedFolders was not provided
-            if (selectedFolders == null || selectedFolders.isEmpty()) {
+            if (!hasSelection) {
                 Collections.shuffle(folders);
             }
             
             // Add start folder at the beginning only if it has images
-            if (imagesByFolder.containsKey(startFolderPath)) {
-                folders.add(0, startFolderPath);
+            if (startFolderIndex >= 0) {
+                folders.add(0, startFolderIndex);
             }
         } else {
             // No start folder specified, shuffle only if no explicit folder order
-            if (selectedFolders == null || selectedFolders.isEmpty()) {
+            if (!hasSelection) {
                 Collections.shuffle(folders);
             }
         }
 
-        // Build final list with ordered folders
-        List<String> result = new ArrayList<>();
-        for (Path folder : folders) {
-            if (imagesByFolder.containsKey(folder)) {
-                Stream<String> folderImagesStream = imagesByFolder.get(folder).stream()
-                        .map(folderPath::relativize)
-                        .map(Path::toString)
-                        .map(p -> p.replace("\\", "/"));
-                
-                // Sort or randomize based on parameter
-                List<String> folderImages;
-                if (randomize) {
-                    folderImages = folderImagesStream.collect(Collectors.toList());
-                    Collections.shuffle(folderImages);
-                } else {
-                    folderImages = folderImagesStream.sorted().collect(Collectors.toList());
-                }
-                
-                result.addAll(folderImages);
+        // Build final order folder by folder
+        for (int folderIndex : folders) {
+            int folderFrom = count;
+            count = addFolderImages(catalog, folderIndex, excludeVideos, order, count);
+
+            // Catalog keeps folder contents sorted; randomize if requested
+            if (randomize) {
+                shuffle(order, folderFrom, count);
+            }
+        }
+
+        return new SlideshowQueue(catalog, Arrays.copyOf(order, count));
+    }
+
+    private int addFolderImages(MediaCatalogService.Catalog catalog, int folderIndex,
+                                boolean excludeVideos, int[] order, int count) {
+        int end = catalog.folderEnd(folderIndex);
+        for (int i = catalog.folderStart(folderIndex); i < end; i++) {
+            // Exclude videos if requested
+            if (excludeVideos && catalog.isVideo(i)) {
+                continue;
             }
+            order[count++] = i;
         }
+        return count;
+    }
 
-        return result;
+    // Fisher-Yates shuffle of order[from, to)
+    private static void shuffle(int[] order, int from, int to) {
+        Random random = ThreadLocalRandom.current();
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
     }
 
+    /**
+     * Serve an image or video
+     * With ?w=<width> (and optional &q=<quality>) images are served as a cached
+     * downscaled JPEG sized for the display instead of the camera original.
+     * With ?size=<px> the smallest pre-rendered thumbnail level of at least
+     * that size is served (see ThumbnailPyramidService), if one exists.
+     * Responses carry an ETag (size + mtime) and Last-Modified from the shared
+     * FileAttributeCache, so repeat requests are answered with 304 and a
+     * looping slideshow doesn't stat the share at all
+     */
     @GetMapping("/images/**")
-    @ResponseBody
-    public Resource getImage(HttpServletRequest request) throws MalformedURLException {
+    public ResponseEntity<Resource> getImage(HttpServletRequest request,
+                                             @RequestParam(value = "w", required = false) Integer width,
+                                             @RequestParam(value = "q", required = false) Integer quality,
+                                             @RequestParam(value = "size", required = false) Integer size) throws IOException {
         String pathWithinHandler = (String) request.getAttribute(
                 HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
         String bestMatchPattern = (String) request.getAttribute(
@@ -439,21 +430,46 @@ public class ImageController {
         // Use Paths.get with the relative path directly
         Path filePath = Paths.get(imageFolder).resolve(relativePath);
 
-        if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
+        FileInfo info = fileAttributeCache.get(filePath);
+        if (!info.isRegularFile()) {
             throw new RuntimeException("File not found: " + filePath.toAbsolutePath());
         }
 
-        return new UrlResource(filePath.toUri());
-    }
-    /**
-     * Check if a path is NOT a thumbnails folder
-     * Excludes both .thumbnails and thumbnails folders at any level
-     */
-    private boolean isNotThumbnailFolder(Path path) {
-        String pathStr = path.toString();
-        return !pathStr.contains(java.io.File.separator + ".thumbnails") &&
-               !pathStr.contains(java.io.File.separator + "thumbnails" + java.io.File.separator) &&
-               !pathStr.endsWith(java.io.File.separator + "thumbnails") &&
-               !pathStr.endsWith(java.io.File.separator + ".thumbnails");
+        boolean thumbnail = relativePath.startsWith(".thumbnails/");
+        long originalModified = info.getLastModified();
+        Path served = null;
+        if (size != null) {
+            ThumbnailEncoder encoder = thumbnailEncoders.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+            served = thumbnailPyramidService.resolve(relativePath, size, originalModified, encoder);
+        }
+        if (served == null && size != null && !"image".equals(info.getContentType().getType())) {
+            // No thumbnail level for a video yet; never answer an <img> with the video itself
+            return ResponseEntity.notFound().build();
+        }
+        if (served == null && width != null) {
+            served = imageDerivativeService.resolve(filePath, originalModified, relativePath, width, quality);
+        }
+        if (served != null && !served.equals(filePath)) {
+            FileInfo servedInfo = fileAttributeCache.get(served);
+            if (servedInfo.isRegularFile()) {
+                filePath = served;
+                info = servedInfo;
+                thumbnail = true;
+            }
+        }
+
+        // ResponseEntity with ETag/Last-Modified: Spring answers If-None-Match /
+        // If-Modified-Since with 304 and no body
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(info.getETag())
+                .lastModified(info.getLastModified())
+                .cacheControl(thumbnail ? thumbnailCacheControl : originalCacheControl)
+                .contentType(info.getContentType())
+                .contentLength(info.getSize());
+        if (size != null) {
+            // Thumbnail format depends on Accept (JPEG or e.g. WebP)
+            response.varyBy(HttpHeaders.ACCEPT);
+        }
+        return response.body(new FileSystemResource(filePath));
     }
 }
@@ -0,0 +1,270 @@
+package au.com.siac.gallery.util;
+
+import au.com.siac.gallery.weather.util.ForecastColumns;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Allocation per forecast response, legacy list-of-maps vs columnar
+ *
+ * Usage:
+ *   java au.com.siac.gallery.util.ForecastAllocationBenchmark [iterations] [days]
+ *
+ * Uses a synthetic Open-Meteo response (days x 24 hours) and measures, per
+ * response, bytes allocated on the calling thread (building + serializing to
+ * JSON), payload size and time for:
+ *   - original loop:    the old WeatherController.fetchForecast loop, copied below
+ *                       (ISO time strings, String[] code switch, ZoneId.of per sample)
+ *   - columns, rebuilt: ForecastColumns.from(..).toLegacy() for every request
+ *   - legacy, cached:   the original shape built once, serialized per request
+ *   - columnar, cached: ?format=columnar, serialized per request
+ */
+public class ForecastAllocationBenchmark {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    private static final DateTimeFormatter ISO_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ZoneId zone = ZoneId.of("Australia/Melbourne");
+        Map<String, Object> isoResponse = syntheticResponse(days, zone, false);
+        Map<String, Object> response = syntheticResponse(days, zone, true);
+        ForecastColumns cached = ForecastColumns.from(response, "Essendon, VIC", zone.getId(), zone);
+
+        System.out.println("=== Forecast Allocation Benchmark ===");
+        System.out.printf("%d days, %d hourly samples, %d iterations%n", days, days * 24, iterations);
+
+        run("original loop", iterations, () -> originalForecast(isoResponse, "Essendon, VIC", zone.getId()));
+        run("columns, rebuilt", iterations, () ->
+                ForecastColumns.from(response, "Essendon, VIC", zone.getId(), zone).toLegacy());
+        run("legacy, cached", iterations, cached::toLegacy);
+        run("columnar, cached", iterations, cached::toColumnar);
+    }
+
+    private static void run(String name, int iterations, Supplier<Map<String, Object>> view) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        // Warm up JIT and Jackson's serializer caches
+        int payload = 0;
+        for (int i = 0; i < Math.max(200, iterations / 4); i++) {
+            payload = JSON.writeValueAsBytes(view.get()).length;
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            payload = JSON.writeValueAsBytes(view.get()).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-18s %8.1f KB allocated/response, %7.1f KB payload, %6.1f us/response%n",
+                name, allocated / 1024.0 / iterations, payload / 1024.0, elapsed / 1000.0 / iterations);
+    }
+
+    /**
+     * Open-Meteo forecast response as RestTemplate parses it; unixTime picks
+     * timeformat=unixtime (current) or the default ISO local times (original)
+     */
+    private static Map<String, Object> syntheticResponse(int days, ZoneId zone, boolean unixTime) {
+        LocalDate today = LocalDate.now(zone);
+        long midnight = today.atStartOfDay(zone).toEpochSecond();
+        int hours = days * 24;
+
+        List<Object> time = new ArrayList<>();
+        List<Object> temperature = new ArrayList<>();
+        List<Object> humidity = new ArrayList<>();
+        List<Object> weatherCode = new ArrayList<>();
+        List<Object> windSpeed = new ArrayList<>();
+        List<Object> pop = new ArrayList<>();
+        List<Object> precipitation = new ArrayList<>();
+        List<Object> uvIndex = new ArrayList<>();
+        int[] codes = {0, 1, 2, 3, 61, 63, 80, 95};
+        for (int i = 0; i < hours; i++) {
+            time.add(unixTime ? (Object) (int) (midnight + i * 3600L)
+                    : today.atStartOfDay().plusHours(i).format(ISO_MINUTES));
+            temperature.add(12.0 + 8 * Math.sin(i / 24.0 * 2 * Math.PI));
+            humidity.add(40 + i % 50);
+            weatherCode.add(codes[i % codes.length]);
+            windSpeed.add(5.0 + i % 20);
+            pop.add(i < hours - 24 ? (Object) (i % 100) : null);
+            precipitation.add(i % 7 == 0 ? 0.4 : 0.0);
+            uvIndex.add(i % 24 > 6 && i % 24 < 19 ? 4.5 : 0.0);
+        }
+        Map<String, Object> hourly = new LinkedHashMap<>();
+        hourly.put("time", time);
+        hourly.put("temperature_2m", temperature);
+        hourly.put("relative_humidity_2m", humidity);
+        hourly.put("weather_code", weatherCode);
+        hourly.put("wind_speed_10m", windSpeed);
+        hourly.put("precipitation_probability", pop);
+        hourly.put("precipitation", precipitation);
+        hourly.put("uv_index", uvIndex);
+
+        List<Object> dailyTime = new ArrayList<>();
+        List<Object> dailyMax = new ArrayList<>();
+        List<Object> dailyMin = new ArrayList<>();
+        List<Object> dailyCode = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            dailyTime.add(unixTime ? (Object) (int) today.plusDays(d).atStartOfDay(zone).toEpochSecond()
+                    : today.plusDays(d).toString());
+            dailyMax.add(20.0 + d);
+            dailyMin.add(8.0 + d);
+            dailyCode.add(codes[d % codes.length]);
+        }
+        Map<String, Object> daily = new LinkedHashMap<>();
+        daily.put("time", dailyTime);
+        daily.put("temperature_2m_max", dailyMax);
+        daily.put("temperature_2m_min", dailyMin);
+        daily.put("weather_code", dailyCode);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("hourly", hourly);
+        response.put("daily", daily);
+        return response;
+    }
+
+    // ===== ORIGINAL FORECAST LOOP (WeatherController before the columnar rewrite) =====
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> originalForecast(Map<String, Object> response, String locationName, String timezone) {
+        Map<String, Object> hourly = (Map<String, Object>) response.get("hourly");
+
+        List<String> times = (List<String>) hourly.get("time");
+        List<Number> temps = (List<Number>) hourly.get("temperature_2m");
+        List<Number> humidity = (List<Number>) hourly.get("relative_humidity_2m");
+        List<Number> weatherCodes = (List<Number>) hourly.get("weather_code");
+        List<Number> windSpeeds = (List<Number>) hourly.get("wind_speed_10m");
+        List<Number> precipProb = (List<Number>) hourly.get("precipitation_probability");
+        List<Number> precipitation = (List<Number>) hourly.get("precipitation");
+        List<Number> uvIndex = (List<Number>) hourly.get("uv_index");
+
+        List<Map<String, Object>> forecastList = new ArrayList<>();
+
+        for (int i = 0; i < times.size(); i++) {
+            String[] weatherInfo = getWeatherFromCode(weatherCodes.get(i).intValue());
+
+            Map<String, Object> forecast = new HashMap<>();
+            forecast.put("dt", parseTimestamp(times.get(i), timezone));
+            forecast.put("main", Map.of(
+                    "temp", temps.get(i),
+                    "temp_min", temps.get(i),
+                    "temp_max", temps.get(i),
+                    "humidity", humidity.get(i)
+            ));
+            forecast.put("weather", List.of(Map.of(
+                    "main", weatherInfo[0],
+                    "description", weatherInfo[1],
+                    "icon", weatherInfo[2]
+            )));
+            forecast.put("wind", Map.of("speed", windSpeeds.get(i)));
+
+            if (uvIndex != null && i < uvIndex.size()) {
+                forecast.put("uv_index", uvIndex.get(i));
+            } else {
+                forecast.put("uv_index", 0);
+            }
+
+            Map<String, Object> rain = new HashMap<>();
+            if (precipitation != null && i < precipitation.size()) {
+                rain.put("3h", precipitation.get(i));
+            }
+            forecast.put("rain", rain);
+
+            if (precipProb != null && i < precipProb.size()) {
+                forecast.put("pop", precipProb.get(i));
+            }
+
+            forecastList.add(forecast);
+        }
+
+        Map<String, Object> dailyData = (Map<String, Object>) response.get("daily");
+        List<Map<String, Object>> dailyList = new ArrayList<>();
+
+        if (dailyData != null) {
+            List<String> dailyTimes = (List<String>) dailyData.get("time");
+            List<Number> dailyMaxTemps = (List<Number>) dailyData.get("temperature_2m_max");
+            List<Number> dailyMinTemps = (List<Number>) dailyData.get("temperature_2m_min");
+            List<Number> dailyWeatherCodes = (List<Number>) dailyData.get("weather_code");
+
+            if (dailyTimes != null && dailyMaxTemps != null && dailyMinTemps != null) {
+                for (int i = 0; i < dailyTimes.size(); i++) {
+                    String[] weatherInfo = getWeatherFromCode(dailyWeatherCodes.get(i).intValue());
+
+                    Map<String, Object> daily = new HashMap<>();
+                    daily.put("dt", parseTimestamp(dailyTimes.get(i) + "T12:00", timezone));
+                    daily.put("temp", Map.of(
+                            "max", dailyMaxTemps.get(i),
+                            "min", dailyMinTemps.get(i)
+                    ));
+                    daily.put("weather", List.of(Map.of(
+                            "main", weatherInfo[0],
+                            "description", weatherInfo[1],
+                            "icon", weatherInfo[2]
+                    )));
+                    dailyList.add(daily);
+                }
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", forecastList);
+        result.put("daily", dailyList);
+        result.put("city", Map.of("name", locationName));
+        result.put("timezone", timezone);
+        return result;
+    }
+
+    private static String[] getWeatherFromCode(int code) {
+        switch (code) {
+            case 0: return new String[]{"Clear", "clear sky", "01d"};
+            case 1: return new String[]{"Clear", "mainly clear", "02d"};
+            case 2: return new String[]{"Clouds", "partly cloudy", "02d"};
+            case 3: return new String[]{"Clouds", "overcast", "04d"};
+            case 45: case 48: return new String[]{"Fog", "foggy", "50d"};
+            case 51: case 53: case 55: return new String[]{"Drizzle", "drizzle", "09d"};
+            case 61: return new String[]{"Rain", "light rain", "10d"};
+            case 63: return new String[]{"Rain", "moderate rain", "10d"};
+            case 65: return new String[]{"Rain", "heavy rain", "10d"};
+            case 71: return new String[]{"Snow", "light snow", "13d"};
+            case 73: return new String[]{"Snow", "moderate snow", "13d"};
+            case 75: return new String[]{"Snow", "heavy snow", "13d"};
+            case 80: case 81: case 82: return new String[]{"Rain", "rain showers", "09d"};
+            case 95: return new String[]{"Thunderstorm", "thunderstorm", "11d"};
+            case 96: case 99: return new String[]{"Thunderstorm", "thunderstorm with hail", "11d"};
+            default: return new String[]{"Unknown", "unknown", "01d"};
+        }
+    }
+
+    private static long parseTimestamp(String isoTime, String timezoneStr) {
+        try {
+            ZoneId zoneId = ZoneId.of(timezoneStr);
+            LocalDateTime localDateTime;
+            if (isoTime.length() == 16) {
+                localDateTime = LocalDateTime.parse(isoTime + ":00");
+            } else if (isoTime.length() == 10) {
+                localDateTime = LocalDate.parse(isoTime).atStartOfDay();
+            } else {
+                localDateTime = LocalDateTime.parse(isoTime);
+            }
+            return localDateTime.atZone(zoneId).toEpochSecond();
+        } catch (Exception e) {
+            return System.currentTimeMillis() / 1000;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package au.com.siac.gallery.util;
+
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Cost per file name of the old per-scanner media checks vs MediaTypeClassifier
+ *
+ * Usage:
+ *   java au.com.siac.gallery.util.MediaTypeBenchmark [names] [rounds]
+ *
+ * Runs each check over a synthetic folder listing (default 1,000,000 names of
+ * mixed-case photos and videos, sidecar files, ._ Mac metadata files) and
+ * reports ns and bytes allocated per name on the calling thread:
+ *   - String.matches:   the original ImageController folder/image filters and
+ *                       MemoriesService.isImageFile (toLowerCase + regex compiled per call)
+ *   - Pattern, cached:  the same regex compiled once, to separate the compile
+ *                       cost from the matching cost
+ *   - endsWith chain:   the original VideoMetadataExtractor.isVideoFile (toLowerCase + endsWith)
+ *   - classifier:       MediaTypeClassifier.isMediaFile / isVideoFile
+ */
+public class MediaTypeBenchmark {
+
+    private static final Pattern MEDIA_PATTERN =
+            Pattern.compile(".*\\.(png|jpg|jpeg|gif|webp|mp4|mov|avi|mkv|webm|m4v|wmv)$");
+
+    // Keeps the JIT from dropping the checks
+    private static long sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<String> names = syntheticNames(count);
+        MediaTypeClassifier classifier = new MediaTypeClassifier(
+                "png,jpg,jpeg,gif,webp", "mp4,mov,avi,mkv,webm,m4v,wmv");
+
+        System.out.println("=== Media Type Benchmark ===");
+        System.out.printf("%d names, %d rounds%n", count, rounds);
+
+        run("String.matches", names, rounds, MediaTypeBenchmark::stringMatches);
+        run("Pattern, cached", names, rounds, MediaTypeBenchmark::cachedPattern);
+        run("classifier", names, rounds, classifier::isMediaFile);
+        run("endsWith (video)", names, rounds, MediaTypeBenchmark::endsWithChain);
+        run("classifier (video)", names, rounds, classifier::isVideoFile);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void run(String name, List<String> names, int rounds, Predicate<String> check) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        // Warm up the JIT
+        for (int round = 0; round < Math.max(5, rounds / 5); round++) {
+            sink += count(names, check);
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int matched = 0;
+        for (int round = 0; round < rounds; round++) {
+            matched = count(names, check);
+            sink += matched;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long calls = (long) names.size() * rounds;
+        System.out.printf("%-20s %8.1f ns/name, %7.1f bytes/name, %d matched%n",
+                name, (double) elapsed / calls, (double) allocated / calls, matched);
+    }
+
+    private static int count(List<String> names, Predicate<String> check) {
+        int matched = 0;
+        for (String name : names) {
+            if (check.test(name)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static boolean stringMatches(String name) {
+        String filename = name.toLowerCase();
+        if (filename.startsWith("._")) {
+            return false;
+        }
+        return filename.matches(".*\\.(png|jpg|jpeg|gif|webp|mp4|mov|avi|mkv|webm|m4v|wmv)$");
+    }
+
+    private static boolean cachedPattern(String name) {
+        if (name.startsWith("._")) {
+            return false;
+        }
+        return MEDIA_PATTERN.matcher(name.toLowerCase()).matches();
+    }
+
+    private static boolean endsWithChain(String name) {
+        String lowerFilename = name.toLowerCase();
+        return lowerFilename.endsWith(".mp4") ||
+               lowerFilename.endsWith(".mov") ||
+               lowerFilename.endsWith(".avi") ||
+               lowerFilename.endsWith(".mkv") ||
+               lowerFilename.endsWith(".webm") ||
+               lowerFilename.endsWith(".m4v") ||
+               lowerFilename.endsWith(".wmv");
+    }
+
+    /**
+     * Roughly what a camera-roll folder on the share looks like
+     */
+    private static List<String> syntheticNames(int count) {
+        String[] shapes = {
+                "IMG_%04d.JPG", "IMG_%04d.jpg", "DSC%05d.jpeg", "PXL_2023%04d.jpg", "Screenshot %d.png",
+                "IMG_%04d.HEIC", "IMG_%04d.MOV", "VID_%04d.mp4", "clip-%d.mkv", "._IMG_%04d.JPG",
+                "IMG_%04d.AAE", "notes-%d.txt", ".DS_Store", "Thumbs.db"
+        };
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(String.format(shapes[random.nextInt(shapes.length)], i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,122 @@
+package au.com.siac.gallery.util;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput benchmark for concurrent range streaming (music/video endpoints)
+ *
+ * Usage (with the app running):
+ *   java au.com.siac.gallery.util.StreamingBenchmark <url> [streams] [seconds] [chunkKB]
+ *   e.g. java au.com.siac.gallery.util.StreamingBenchmark "http://localhost:8080/music/Album/track.mp3" 16 30 512
+ *
+ * Each stream behaves like a player: it reads the file in sequential
+ * chunkKB ranges and, one chunk in ten, seeks to a random offset first.
+ * Reports MB/s, requests/s, latency percentiles and status codes.
+ */
+public class StreamingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: StreamingBenchmark <url> [streams=8] [seconds=20] [chunkKB=512]");
+            return;
+        }
+        URI uri = URI.create(args[0]);
+        int streams = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long chunkBytes = (args.length > 3 ? Long.parseLong(args[3]) : 512) * 1024;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long fileSize = probeSize(client, uri);
+        System.out.println("=== Streaming Benchmark ===");
+        System.out.println("URL: " + uri);
+        System.out.printf("File: %.1f MB, streams: %d, duration: %ds, chunk: %d KB%n",
+                fileSize / (1024.0 * 1024.0), streams, seconds, chunkBytes / 1024);
+
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong requests = new AtomicLong();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        ConcurrentHashMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            workers.add(Thread.ofVirtual().start(() -> {
+                byte[] buffer = new byte[64 * 1024];
+                long position = 0;
+                while (System.nanoTime() < deadline) {
+                    if (position >= fileSize || ThreadLocalRandom.current().nextInt(10) == 0) {
+                        position = ThreadLocalRandom.current().nextLong(fileSize);
+                    }
+                    long end = Math.min(position + chunkBytes, fileSize) - 1;
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .header("Range", "bytes=" + position + "-" + end)
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                        long read = 0;
+                        try (InputStream body = response.body()) {
+                            int n;
+                            while ((n = body.read(buffer)) != -1) {
+                                read += n;
+                            }
+                        }
+                        statuses.computeIfAbsent(response.statusCode(), k -> new AtomicLong()).incrementAndGet();
+                        bytes.addAndGet(read);
+                        requests.incrementAndGet();
+                        latencies.add((System.nanoTime() - start) / 1_000_000);
+                        position = end + 1;
+                    } catch (Exception e) {
+                        statuses.computeIfAbsent(-1, k -> new AtomicLong()).incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("Throughput: %.1f MB/s, %.1f requests/s%n",
+                bytes.get() / (1024.0 * 1024.0) / seconds, requests.get() / (double) seconds);
+        System.out.printf("Latency ms: p50=%d p95=%d p99=%d max=%d%n",
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+        System.out.println("Status codes (-1 = error): " + statuses);
+    }
+
+    /**
+     * Total length from a one-byte range request (Content-Range: bytes 0-0/LENGTH)
+     */
+    private static long probeSize(HttpClient client, URI uri) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Range", "bytes=0-0").build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+        if (response.statusCode() != 206 || contentRange == null) {
+            throw new IllegalStateException("Server did not answer a range request (status " + response.statusCode() + ")");
+        }
+        return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1));
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
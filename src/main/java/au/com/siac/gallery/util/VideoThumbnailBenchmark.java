@@ -0,0 +1,159 @@
+package au.com.siac.gallery.util;
+
+import au.com.siac.gallery.video.util.VideoThumbnailGenerator;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Time the video thumbnail strategies on one or more videos
+ *
+ * Usage (FFmpeg on the PATH):
+ *   java au.com.siac.gallery.util.VideoThumbnailBenchmark <video>... [--frame-time=3] [--keyframes=5] [--runs=3]
+ *
+ * Same ffmpeg commands as VideoThumbnailGenerator, written to a temp folder:
+ *   - output seek: -ss after -i, decodes from the start (the old behaviour)
+ *   - input seek:  -ss before -i, decodes from the nearest keyframe (seek-mode=input)
+ *   - keyframes:   sharpest of N keyframes after the frame time (keyframe-candidates=N)
+ * Reports the median wall time of each per video.
+ */
+public class VideoThumbnailBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        double frameTime = 3;
+        int keyframes = 5;
+        int runs = 3;
+        List<Path> videos = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--frame-time=")) {
+                frameTime = Double.parseDouble(arg.substring("--frame-time=".length()));
+            } else if (arg.startsWith("--keyframes=")) {
+                keyframes = Integer.parseInt(arg.substring("--keyframes=".length()));
+            } else if (arg.startsWith("--runs=")) {
+                runs = Math.max(1, Integer.parseInt(arg.substring("--runs=".length())));
+            } else {
+                videos.add(Paths.get(arg));
+            }
+        }
+        if (videos.isEmpty()) {
+            System.out.println("Usage: VideoThumbnailBenchmark <video>... [--frame-time=3] [--keyframes=5] [--runs=3]");
+            return;
+        }
+
+        System.out.println("=== Video Thumbnail Benchmark ===");
+        System.out.printf("Frame time: %.1fs, keyframe candidates: %d, runs: %d%n", frameTime, keyframes, runs);
+
+        Path workDir = Files.createTempDirectory("video-thumbnail-benchmark");
+        try {
+            for (Path video : videos) {
+                if (!Files.isRegularFile(video)) {
+                    System.out.println("Not a file: " + video);
+                    continue;
+                }
+                System.out.println("\n" + video.getFileName() + " (" + Files.size(video) / (1024 * 1024) + " MB)");
+                report("output seek", median(runs, () -> frame(video, workDir.resolve("output.jpg"), frameTime, false)));
+                report("input seek", median(runs, () -> frame(video, workDir.resolve("input.jpg"), frameTime, true)));
+                if (keyframes > 1) {
+                    int candidates = keyframes;
+                    report("sharpest of " + candidates, median(runs, () -> sharpestKeyframe(video, workDir, frameTime, candidates)));
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(workDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private interface Run {
+        boolean run() throws Exception;
+    }
+
+    /**
+     * Median ms over the runs, or -1 if any run failed
+     */
+    private static long median(int runs, Run run) throws Exception {
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            if (!run.run()) {
+                return -1;
+            }
+            times[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    private static void report(String strategy, long millis) {
+        System.out.printf("  %-18s %s%n", strategy, millis < 0 ? "failed" : millis + " ms");
+    }
+
+    private static boolean frame(Path video, Path output, double frameTime, boolean inputSeek) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("ffmpeg");
+        if (inputSeek) {
+            command.addAll(List.of("-ss", seconds(frameTime)));
+        }
+        command.addAll(List.of("-i", video.toString()));
+        if (!inputSeek) {
+            command.addAll(List.of("-ss", seconds(frameTime)));
+        }
+        command.addAll(List.of("-frames:v", "1", "-vf", VideoThumbnailGenerator.playIconFilter(),
+                "-q:v", "2", output.toString(), "-y"));
+        return ffmpeg(command);
+    }
+
+    /**
+     * Extract the candidates and score them, as the generator does
+     */
+    private static boolean sharpestKeyframe(Path video, Path workDir, double frameTime, int candidates) throws Exception {
+        Path candidateDir = Files.createTempDirectory(workDir, "keyframes");
+        boolean ok = ffmpeg(List.of("ffmpeg",
+                "-skip_frame", "nokey",
+                "-ss", seconds(frameTime),
+                "-i", video.toString(),
+                "-frames:v", String.valueOf(candidates),
+                "-fps_mode", "passthrough",
+                "-vf", VideoThumbnailGenerator.playIconFilter(),
+                "-q:v", "2",
+                candidateDir.resolve("candidate-%02d.jpg").toString(),
+                "-y"));
+        if (!ok) {
+            return false;
+        }
+        double best = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(candidateDir, "candidate-*.jpg")) {
+            for (Path file : files) {
+                BufferedImage image = ImageIO.read(file.toFile());
+                if (image != null) {
+                    best = Math.max(best, VideoThumbnailGenerator.sharpness(image));
+                }
+            }
+        }
+        return best >= 0;
+    }
+
+    private static boolean ffmpeg(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return process.waitFor() == 0;
+    }
+
+    private static String seconds(double seconds) {
+        return String.format(Locale.ROOT, "%.3f", seconds);
+    }
+}
@@ -1,5 +1,6 @@
 package au.com.siac.gallery.video.controller;
 
+import au.com.siac.gallery.media.service.MediaToolExecutor;
 import au.com.siac.gallery.memories.entity.PhotoMetadata;
 import au.com.siac.gallery.video.entity.VideoPlaylist;
 import au.com.siac.gallery.video.service.VideoService;
@@ -17,6 +18,9 @@ public class VideoController {
     @Autowired
     private VideoService videoService;
     
+    @Autowired
+    private MediaToolExecutor mediaToolExecutor;
+    
     /**
      * Get all videos
      */
@@ -53,6 +57,14 @@ public class VideoController {
         return ResponseEntity.ok(stats);
     }
     
+    /**
+     * ffmpeg/ffprobe pool metrics (queue depth, running, timeouts)
+     */
+    @GetMapping("/tools/metrics")
+    public ResponseEntity<Map<String, Object>> getToolMetrics() {
+        return ResponseEntity.ok(mediaToolExecutor.getMetrics());
+    }
+    
     /**
      * Get all playlists
      */
@@ -1,33 +1,46 @@
 package au.com.siac.gallery.video.controller;
 
+import au.com.siac.gallery.media.service.FileAttributeCache;
+import au.com.siac.gallery.media.service.FileAttributeCache.FileInfo;
+import au.com.siac.gallery.media.service.MediaStreamingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 
 /**
- * NEW VideoStreamingController - Clean implementation
  * Serves video files with HTTP Range request support for seeking
  */
 @RestController
 @RequestMapping("/api/videos")
 public class VideoStreamingController {
     
+    private static final CacheControl VIDEO_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    
     @Value("${image.folder}")
     private String imageFolder;
     
+    private final MediaStreamingService mediaStreamingService;
+    private final FileAttributeCache fileAttributeCache;
+    
+    public VideoStreamingController(MediaStreamingService mediaStreamingService,
+                                    FileAttributeCache fileAttributeCache) {
+        this.mediaStreamingService = mediaStreamingService;
+        this.fileAttributeCache = fileAttributeCache;
+    }
+    
     /**
      * Test endpoint to verify controller is working
      */
@@ -37,74 +50,36 @@ public class VideoStreamingController {
     }
     
     /**
-     * Stream video files - uses Spring's native ResourceRegion for optimal performance
-     * This is the CORRECT way to do video streaming in Spring Boot
+     * Stream video files with Range support for seeking
+     * 200 without Range, 206 per range (open-ended ranges capped to
+     * media.streaming.open-range-window), 416 on bad ranges, If-Range honoured
+     * See MediaStreamingService. Nothing is logged here: players send hundreds
+     * of range requests per video
      */
     @GetMapping("/**")
-    public ResponseEntity<org.springframework.core.io.support.ResourceRegion> streamVideo(
-            @RequestHeader(value = "Range", required = false) String rangeHeader,
-            jakarta.servlet.http.HttpServletRequest request) throws IOException {
+    public void streamVideo(HttpServletRequest request, HttpServletResponse response) throws IOException {
         
         // Extract the path after /api/videos/
         String requestUrl = request.getRequestURI();
-        String relativePath = requestUrl.substring("/api/videos/".length());
-        
-        System.out.println("[VideoStreamingController] Requested path: " + relativePath);
+        String relativePath = URLDecoder.decode(
+                requestUrl.substring(request.getContextPath().length() + "/api/videos/".length()),
+                StandardCharsets.UTF_8);
         
-        // Resolve full file path
-        Path filePath = Paths.get(imageFolder).resolve(relativePath);
+        // Resolve full file path (never outside the image folder)
+        Path root = Paths.get(imageFolder).toAbsolutePath().normalize();
+        Path filePath = root.resolve(relativePath).normalize();
         
-        System.out.println("[VideoStreamingController] Full path: " + filePath);
-        
-        // Check file exists
-        if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-            System.err.println("[VideoStreamingController] File not found: " + filePath);
-            return ResponseEntity.notFound().build();
+        FileInfo info = fileAttributeCache.get(filePath);
+        if (!filePath.startsWith(root) || !info.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
         
-        long fileSize = Files.size(filePath);
-        Resource video = new FileSystemResource(filePath);
         String contentType = getContentType(filePath.getFileName().toString());
-        
-        System.out.println("[VideoStreamingController] File size: " + fileSize + ", Content-Type: " + contentType);
-        
-        // Parse range or use default
-        long start = 0;
-        long end = fileSize - 1;
-        
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            String[] ranges = rangeHeader.substring(6).split("-");
-            start = Long.parseLong(ranges[0]);
-            
-            if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                end = Long.parseLong(ranges[1]);
-            }
-            
-            System.out.println("[VideoStreamingController] Range request: bytes " + start + "-" + end + "/" + fileSize);
-        } else {
-            System.out.println("[VideoStreamingController] No range header, serving full file");
-        }
-        
-        long rangeLength = end - start + 1;
-        
-        // Use Spring's ResourceRegion - it handles everything optimally!
-        org.springframework.core.io.support.ResourceRegion region = 
-            new org.springframework.core.io.support.ResourceRegion(video, start, rangeLength);
-        
-        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=86400")
-                .header(HttpHeaders.ETAG, "\"" + filePath.getFileName() + "-" + fileSize + "\"")
-                .body(region);
+        mediaStreamingService.stream(request, response, filePath, info,
+                MediaType.parseMediaType(contentType), VIDEO_CACHE_CONTROL);
     }
     
-    /**
-     * Handle range request by actually reading and sending only requested bytes
-     * ULTIMATE OPTIMIZATION - Optimized for continuous smooth playback
-     */
-    
-    
     /**
      * Get content type based on file extension
      */
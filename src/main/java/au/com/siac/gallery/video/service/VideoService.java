@@ -30,6 +30,14 @@ public class VideoService {
         return photoMetadataRepository.findByMediaType("VIDEO");
     }
     
+    /**
+     * Get one indexed video by its relative path
+     */
+    public Optional<PhotoMetadata> getVideoByPath(String relativePath) {
+        return photoMetadataRepository.findByFilePath(relativePath)
+                .filter(PhotoMetadata::isVideo);
+    }
+    
     /**
      * Get videos by folder
      */
@@ -0,0 +1,345 @@
+package au.com.siac.gallery.video.util;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.json.JsonFactory;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Everything indexing needs from a video, parsed from one
+ * "ffprobe -print_format json -show_format -show_streams" run.
+ * Fields are null when the container doesn't carry them
+ *
+ * Stream fields come from the main video stream (the default one, never
+ * embedded cover art), so a second stream can't leak its size or codec in.
+ */
+public final class VideoProbe {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Cameras without a clock write the container epoch (1904/1970)
+    private static final Instant EARLIEST_CREATION_TIME = Instant.parse("1980-01-01T00:00:00Z");
+
+    private final Double durationSeconds;
+    private final Integer width;
+    private final Integer height;
+    private final int rotation;
+    private final String videoCodec;
+    private final Double frameRate;
+    private final Long bitRate;
+    private final boolean hasAudio;
+    private final Instant creationTime;
+
+    private VideoProbe(Double durationSeconds, Integer width, Integer height, int rotation, String videoCodec,
+                       Double frameRate, Long bitRate, boolean hasAudio, Instant creationTime) {
+        this.durationSeconds = durationSeconds;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.videoCodec = videoCodec;
+        this.frameRate = frameRate;
+        this.bitRate = bitRate;
+        this.hasAudio = hasAudio;
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * Result with only a (possibly estimated) duration, for when ffprobe fails
+     */
+    static VideoProbe ofDuration(Double durationSeconds) {
+        return new VideoProbe(durationSeconds, null, null, 0, null, null, null, false, null);
+    }
+
+    /**
+     * Parse ffprobe's JSON output in one streaming pass
+     */
+    public static VideoProbe parse(String json) {
+        Stream video = null;
+        boolean hasAudio = false;
+        Double formatDuration = null;
+        Long formatBitRate = null;
+        Instant formatCreationTime = null;
+
+        try (JsonParser parser = JSON.createParser(ObjectReadContext.empty(), json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return ofDuration(null);
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("streams") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Stream stream = Stream.read(parser);
+                        if ("audio".equals(stream.codecType)) {
+                            hasAudio = true;
+                        } else if ("video".equals(stream.codecType) && !stream.attachedPicture
+                                && (video == null || (stream.isDefault && !video.isDefault))) {
+                            video = stream;
+                        }
+                    }
+                } else if (name.equals("format") && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                        String field = parser.currentName();
+                        parser.nextToken();
+                        switch (field) {
+                            case "duration" -> formatDuration = positiveDouble(parser);
+                            case "bit_rate" -> formatBitRate = positiveLong(parser);
+                            case "tags" -> formatCreationTime = readCreationTime(parser);
+                            default -> parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JacksonException e) {
+            // Truncated or garbled output; keep what was read
+        }
+
+        if (video == null) {
+            return new VideoProbe(formatDuration, null, null, 0, null, null, formatBitRate, hasAudio, formatCreationTime);
+        }
+        return new VideoProbe(
+                formatDuration != null ? formatDuration : video.duration,
+                video.width,
+                video.height,
+                video.rotation,
+                video.codecName,
+                video.averageFrameRate != null ? video.averageFrameRate : video.baseFrameRate,
+                formatBitRate != null ? formatBitRate : video.bitRate,
+                hasAudio,
+                formatCreationTime != null ? formatCreationTime : video.creationTime);
+    }
+
+    /**
+     * Fields read from one entry of "streams"
+     */
+    private static final class Stream {
+        private String codecType;
+        private String codecName;
+        private Integer width;
+        private Integer height;
+        private Double averageFrameRate;
+        private Double baseFrameRate;
+        private Long bitRate;
+        private Double duration;
+        private int rotation;
+        private boolean isDefault;
+        private boolean attachedPicture;
+        private Instant creationTime;
+
+        private static Stream read(JsonParser parser) {
+            Stream stream = new Stream();
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "codec_type" -> stream.codecType = parser.getValueAsString();
+                    case "codec_name" -> stream.codecName = parser.getValueAsString();
+                    case "width" -> stream.width = positiveInt(parser);
+                    case "height" -> stream.height = positiveInt(parser);
+                    case "avg_frame_rate" -> stream.averageFrameRate = fraction(parser.getValueAsString());
+                    case "r_frame_rate" -> stream.baseFrameRate = fraction(parser.getValueAsString());
+                    case "bit_rate" -> stream.bitRate = positiveLong(parser);
+                    case "duration" -> stream.duration = positiveDouble(parser);
+                    case "disposition" -> stream.readDisposition(parser, value);
+                    case "tags" -> stream.readTags(parser, value);
+                    case "side_data_list" -> stream.readSideData(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+            return stream;
+        }
+
+        private void readDisposition(JsonParser parser, JsonToken value) {
+            if (value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("default")) {
+                    isDefault = parser.getValueAsInt(0) == 1;
+                } else if (field.equals("attached_pic")) {
+                    attachedPicture = parser.getValueAsInt(0) == 1;
+                }
+            }
+        }
+
+        private void readTags(JsonParser parser, JsonToken value) {
+            if (value != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("rotate")) {
+                    // Older ffmpeg: clockwise degrees
+                    rotation = normalizeRotation(parser.getValueAsInt(0));
+                } else if (field.equals("creation_time")) {
+                    creationTime = creationTime(parser.getValueAsString());
+                }
+            }
+        }
+
+        private void readSideData(JsonParser parser, JsonToken value) {
+            if (value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if (field.equals("rotation")) {
+                        // Display matrix: counter-clockwise degrees
+                        rotation = normalizeRotation(-parser.getValueAsInt(0));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    private static Instant readCreationTime(JsonParser parser) {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Instant creationTime = null;
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("creation_time")) {
+                creationTime = creationTime(parser.getValueAsString());
+            }
+        }
+        return creationTime;
+    }
+
+    private static Instant creationTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            Instant instant = OffsetDateTime.parse(value).toInstant();
+            return instant.isBefore(EARLIEST_CREATION_TIME) ? null : instant;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Integer positiveInt(JsonParser parser) {
+        int value = parser.getValueAsInt(0);
+        return value > 0 ? value : null;
+    }
+
+    private static Long positiveLong(JsonParser parser) {
+        long value = parser.getValueAsLong(0);
+        return value > 0 ? value : null;
+    }
+
+    private static Double positiveDouble(JsonParser parser) {
+        double value = parser.getValueAsDouble(0);
+        return value > 0 ? value : null;
+    }
+
+    /**
+     * "30000/1001" -> 29.97; "0/0" (unknown) -> null
+     */
+    private static Double fraction(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            int slash = value.indexOf('/');
+            double result = slash < 0
+                    ? Double.parseDouble(value)
+                    : Double.parseDouble(value.substring(0, slash)) / Double.parseDouble(value.substring(slash + 1));
+            return Double.isFinite(result) && result > 0 ? result : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int normalizeRotation(int degrees) {
+        return ((degrees % 360) + 360) % 360;
+    }
+
+    public Double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Whole seconds, as stored in video_duration
+     */
+    public Integer getDurationRounded() {
+        return durationSeconds != null ? (int) Math.round(durationSeconds) : null;
+    }
+
+    /**
+     * Coded width, before rotation
+     */
+    public Integer getWidth() {
+        return width;
+    }
+
+    /**
+     * Coded height, before rotation
+     */
+    public Integer getHeight() {
+        return height;
+    }
+
+    /**
+     * Clockwise degrees to rotate for display (0, 90, 180 or 270)
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Size as displayed, e.g. "1080x1920" for a portrait phone clip
+     */
+    public String getResolution() {
+        if (width == null || height == null) {
+            return null;
+        }
+        boolean transposed = rotation == 90 || rotation == 270;
+        return transposed ? height + "x" + width : width + "x" + height;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public Double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Overall bit rate in bits/s
+     */
+    public Long getBitRate() {
+        return bitRate;
+    }
+
+    public boolean hasAudio() {
+        return hasAudio;
+    }
+
+    /**
+     * Recording time from the container (creation_time), if plausible
+     */
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+}
@@ -1,18 +1,24 @@
 package au.com.siac.gallery.video.util;
 
+import au.com.siac.gallery.media.service.MediaToolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Utility class for generating video thumbnails using FFmpeg
@@ -25,15 +31,47 @@ public class VideoThumbnailGenerator {
     
     private static final int THUMBNAIL_WIDTH = 640;  // Width of generated thumbnails
     
+    private static final Duration VERSION_CHECK_TIMEOUT = Duration.ofSeconds(10);
+    
+    // Seconds into the video to take the frame from (clamped to the duration)
+    @Value("${media.video.thumbnails.frame-time:3}")
+    private double frameTimeSeconds;
+    
+    // "input" seeks before decoding; "output" decodes from the start (old behaviour)
+    @Value("${media.video.thumbnails.seek-mode:input}")
+    private String seekMode;
+    
+    // > 1: pick the sharpest of this many keyframes after the frame time
+    @Value("${media.video.thumbnails.keyframe-candidates:0}")
+    private int keyframeCandidates;
+    
+    private final MediaToolExecutor mediaToolExecutor;
+    
+    public VideoThumbnailGenerator(MediaToolExecutor mediaToolExecutor) {
+        this.mediaToolExecutor = mediaToolExecutor;
+    }
+    
     /**
      * Generate a thumbnail for a video file using FFmpeg
-     * Extracts a frame at 5 seconds into the video
+     * Extracts a frame at media.video.thumbnails.frame-time seconds
      * 
      * @param videoPath Path to the video file
      * @param thumbnailPath Path where thumbnail should be saved
      * @return true if thumbnail was generated successfully
      */
     public boolean generateVideoThumbnail(Path videoPath, Path thumbnailPath) {
+        return generateVideoThumbnail(videoPath, thumbnailPath, null);
+    }
+    
+    /**
+     * Generate a thumbnail for a video file using FFmpeg
+     * 
+     * @param videoPath Path to the video file
+     * @param thumbnailPath Path where thumbnail should be saved
+     * @param durationSeconds Known duration (clamps the frame time), or null
+     * @return true if thumbnail was generated successfully
+     */
+    public boolean generateVideoThumbnail(Path videoPath, Path thumbnailPath, Double durationSeconds) {
         try {
             // Create parent directories if needed
             Path thumbnailParent = thumbnailPath.getParent();
@@ -48,7 +86,11 @@ public class VideoThumbnailGenerator {
             }
             
             // Try to generate using FFmpeg first
-            if (generateWithFFmpeg(videoPath, thumbnailPath)) {
+            double seekSeconds = frameTime(durationSeconds);
+            if (keyframeCandidates > 1 && generateFromSharpestKeyframe(videoPath, thumbnailPath, seekSeconds) != null) {
+                return true;
+            }
+            if (generateWithFFmpeg(videoPath, thumbnailPath, seekSeconds, !"output".equalsIgnoreCase(seekMode)) != null) {
                 return true;
             }
             
@@ -62,62 +104,188 @@ public class VideoThumbnailGenerator {
         }
     }
     
+    /**
+     * Configured frame time, clamped so short clips still get a frame
+     */
+    private double frameTime(Double durationSeconds) {
+        double seconds = Math.max(0, frameTimeSeconds);
+        if (durationSeconds != null && durationSeconds > 0 && seconds >= durationSeconds) {
+            seconds = durationSeconds / 2;
+        }
+        return seconds;
+    }
+    
     /**
      * Generate thumbnail using FFmpeg with play icon overlay
+     * 
+     * @param inputSeek seek before -i (jumps to the nearest keyframe and decodes
+     *                  only from there) rather than decoding from the start
+     * @return ffmpeg run time in ms, or null if it failed
      */
-    private boolean generateWithFFmpeg(Path videoPath, Path thumbnailPath) {
+    private Long generateWithFFmpeg(Path videoPath, Path thumbnailPath, double seekSeconds, boolean inputSeek) {
         try {
             logger.info("Generating FFmpeg thumbnail with play icon for: {}", videoPath.getFileName());
             
-            // Create drawtext filter for play icon
-            // The play icon is a triangle made with Unicode character or custom drawing
-            String playIconFilter = String.format(
-                "scale=%d:-1," +
-                "drawbox=x=10:y=h-60:w=50:h=50:color=black@0.7:t=fill," +  // Semi-transparent black box
-                "drawbox=x=10:y=h-60:w=50:h=50:color=white@0.2:t=2," +      // White border
-                "drawtext=fontfile=/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf:text='▶':fontsize=32:fontcolor=white:x=22:y=h-48:borderw=1:bordercolor=black@0.8",
-                THUMBNAIL_WIDTH
-            );
-            
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-i", videoPath.toString(),
-                "-ss", "00:00:05",                      // Seek to 5 seconds
-                "-vframes", "1",                         // Extract 1 frame
-                "-vf", playIconFilter,                   // Apply scale + play icon overlay
+            List<String> command = new ArrayList<>();
+            command.add("ffmpeg");
+            if (inputSeek) {
+                command.addAll(List.of("-ss", seconds(seekSeconds)));           // Seek the demuxer first
+            }
+            command.addAll(List.of("-i", videoPath.toString()));
+            if (!inputSeek) {
+                command.addAll(List.of("-ss", seconds(seekSeconds)));           // Decode up to the frame time
+            }
+            command.addAll(List.of(
+                "-frames:v", "1",                        // Extract 1 frame
+                "-vf", playIconFilter(),                 // Apply scale + play icon overlay
                 "-q:v", "2",                             // High quality JPEG
                 thumbnailPath.toString(),
                 "-y"                                     // Overwrite if exists
-            );
+            ));
             
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
+            // Runs on the shared media tool pool (bounded, killed on timeout)
+            MediaToolExecutor.Result result = mediaToolExecutor.run(command);
             
-            // Read output (for debugging errors)
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
-            
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0 && Files.exists(thumbnailPath)) {
+            if (result.isSuccess() && Files.exists(thumbnailPath)) {
                 long size = Files.size(thumbnailPath);
-                logger.info("✅ FFmpeg thumbnail with play icon generated: {} ({} KB)", 
-                    thumbnailPath.getFileName(), size / 1024);
-                return true;
+                logger.info("✅ FFmpeg thumbnail with play icon generated: {} ({} KB, {}ms)", 
+                    thumbnailPath.getFileName(), size / 1024, result.getDurationMillis());
+                return result.getDurationMillis();
             } else {
-                logger.error("FFmpeg failed with exit code {}: {}", exitCode, output.toString());
-                return false;
+                logger.error("FFmpeg failed with exit code {}{}: {}", result.getExitCode(),
+                    result.isTimedOut() ? " (timed out)" : "", result.getOutput());
+                return null;
             }
             
         } catch (Exception e) {
             logger.error("FFmpeg execution failed: " + e.getMessage());
-            return false;
+            return null;
+        }
+    }
+    
+    /**
+     * Decode only keyframes from the frame time on, and keep the sharpest of
+     * the first media.video.thumbnails.keyframe-candidates (avoids motion blur
+     * and fades). One ffmpeg run; candidates are scored in Java
+     * 
+     * @return total time in ms, or null if no candidate was produced
+     */
+    private Long generateFromSharpestKeyframe(Path videoPath, Path thumbnailPath, double seekSeconds) {
+        long start = System.currentTimeMillis();
+        Path workDir = null;
+        try {
+            Path parent = thumbnailPath.toAbsolutePath().getParent();
+            workDir = Files.createTempDirectory(parent, ".keyframes");
+            
+            MediaToolExecutor.Result result = mediaToolExecutor.run(List.of(
+                "ffmpeg",
+                "-skip_frame", "nokey",                  // Decoder only touches keyframes
+                "-ss", seconds(seekSeconds),
+                "-i", videoPath.toString(),
+                "-frames:v", String.valueOf(keyframeCandidates),
+                "-fps_mode", "passthrough",              // One image per keyframe, no duplicates
+                "-vf", playIconFilter(),
+                "-q:v", "2",
+                workDir.resolve("candidate-%02d.jpg").toString(),
+                "-y"
+            ));
+            if (!result.isSuccess()) {
+                logger.debug("Keyframe extraction failed for {}: {}", videoPath.getFileName(), result.getOutput());
+                return null;
+            }
+            
+            Path sharpest = null;
+            double bestScore = -1;
+            try (DirectoryStream<Path> candidates = Files.newDirectoryStream(workDir, "candidate-*.jpg")) {
+                for (Path candidate : candidates) {
+                    BufferedImage image = ImageIO.read(candidate.toFile());
+                    double score = image != null ? sharpness(image) : -1;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        sharpest = candidate;
+                    }
+                }
+            }
+            if (sharpest == null) {
+                return null;
+            }
+            
+            Files.move(sharpest, thumbnailPath, StandardCopyOption.REPLACE_EXISTING);
+            long elapsed = System.currentTimeMillis() - start;
+            logger.info("✅ FFmpeg thumbnail from sharpest of {} keyframes: {} ({}ms)",
+                keyframeCandidates, thumbnailPath.getFileName(), elapsed);
+            return elapsed;
+            
+        } catch (Exception e) {
+            logger.warn("Keyframe selection failed for {}: {}", videoPath.getFileName(), e.getMessage());
+            return null;
+        } finally {
+            if (workDir != null) {
+                deleteRecursively(workDir);
+            }
+        }
+    }
+    
+    /**
+     * Variance of the Laplacian of the luma, sampled on a grid of at most
+     * ~160px per side; higher is sharper
+     */
+    public static double sharpness(BufferedImage image) {
+        int step = Math.max(1, Math.max(image.getWidth(), image.getHeight()) / 160);
+        int columns = (image.getWidth() - 2 * step) / step;
+        int rows = (image.getHeight() - 2 * step) / step;
+        if (columns <= 0 || rows <= 0) {
+            return 0;
+        }
+        
+        double sum = 0;
+        double sumSquares = 0;
+        for (int y = step; y < image.getHeight() - step; y += step) {
+            for (int x = step; x < image.getWidth() - step; x += step) {
+                double laplacian = luma(image, x - step, y) + luma(image, x + step, y)
+                        + luma(image, x, y - step) + luma(image, x, y + step)
+                        - 4 * luma(image, x, y);
+                sum += laplacian;
+                sumSquares += laplacian * laplacian;
+            }
+        }
+        double count = (double) columns * rows;
+        double mean = sum / count;
+        return sumSquares / count - mean * mean;
+    }
+    
+    private static int luma(BufferedImage image, int x, int y) {
+        int rgb = image.getRGB(x, y);
+        return (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+    }
+    
+    /**
+     * Scale to the thumbnail width and draw the play badge
+     */
+    public static String playIconFilter() {
+        // Create drawtext filter for play icon
+        // The play icon is a triangle made with Unicode character or custom drawing
+        return String.format(
+            "scale=%d:-1," +
+            "drawbox=x=10:y=h-60:w=50:h=50:color=black@0.7:t=fill," +  // Semi-transparent black box
+            "drawbox=x=10:y=h-60:w=50:h=50:color=white@0.2:t=2," +      // White border
+            "drawtext=fontfile=/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf:text='▶':fontsize=32:fontcolor=white:x=22:y=h-48:borderw=1:bordercolor=black@0.8",
+            THUMBNAIL_WIDTH
+        );
+    }
+    
+    private static String seconds(double seconds) {
+        return String.format(Locale.ROOT, "%.3f", seconds);
+    }
+    
+    private static void deleteRecursively(Path dir) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            logger.debug("Could not clean up {}: {}", dir, e.getMessage());
         }
     }
     
@@ -233,10 +401,7 @@ public class VideoThumbnailGenerator {
      */
     public boolean isFFmpegAvailable() {
         try {
-            ProcessBuilder pb = new ProcessBuilder("ffmpeg", "-version");
-            Process process = pb.start();
-            int exitCode = process.waitFor();
-            boolean available = (exitCode == 0);
+            boolean available = mediaToolExecutor.run(List.of("ffmpeg", "-version"), VERSION_CHECK_TIMEOUT).isSuccess();
             
             if (available) {
                 logger.info("✅ FFmpeg is available");
@@ -1,8 +1,10 @@
 package au.com.siac.gallery.weather.controller;
 
+import au.com.siac.gallery.core.UpstreamHttpClient;
 import au.com.siac.gallery.weather.entity.WeatherLocation;
 import au.com.siac.gallery.weather.service.WeatherLocationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +18,12 @@ public class WeatherLocationController {
     
     @Autowired
     private WeatherLocationService locationService;
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Value("${weather.api.geocoding-url:https://geocoding-api.open-meteo.com/v1/search}")
+    private String geocodingUrl;
     
     /**
      * Get all saved weather locations
@@ -164,13 +172,10 @@ public class WeatherLocationController {
     public ResponseEntity<?> searchLocation(@RequestParam String q) {
         try {
             // Use Open-Meteo Geocoding API (free, no API key needed)
-            String url = "https://geocoding-api.open-meteo.com/v1/search?name=" + 
+            String url = geocodingUrl + "?name=" + 
                 java.net.URLEncoder.encode(q, "UTF-8") + "&count=10&language=en&format=json";
             
-            org.springframework.web.client.RestTemplate restTemplate = 
-                new org.springframework.web.client.RestTemplate();
-            
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+            Map<String, Object> response = upstreamHttpClient.getForObject(url, Map.class);
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
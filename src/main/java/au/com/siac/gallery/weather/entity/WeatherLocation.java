@@ -26,6 +26,14 @@ public class WeatherLocation {
     @Column(nullable = false)
     private Boolean isDefault = false;
     
+    // IANA zone id, e.g. "Australia/Melbourne"; resolved from the coordinates when not given
+    @Column(length = 64)
+    private String timezone;
+    
+    // Where the zone came from: "GIVEN" (client/geocoder) or "OPEN_METEO"; null until resolved
+    @Column(name = "timezone_source", length = 16)
+    private String timezoneSource;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -95,6 +103,22 @@ public class WeatherLocation {
         this.isDefault = isDefault;
     }
     
+    public String getTimezone() {
+        return timezone;
+    }
+    
+    public void setTimezone(String timezone) {
+        this.timezone = timezone;
+    }
+    
+    public String getTimezoneSource() {
+        return timezoneSource;
+    }
+    
+    public void setTimezoneSource(String timezoneSource) {
+        this.timezoneSource = timezoneSource;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
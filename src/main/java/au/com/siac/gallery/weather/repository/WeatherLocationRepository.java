@@ -20,6 +20,12 @@ public interface WeatherLocationRepository extends JpaRepository<WeatherLocation
      */
     Optional<WeatherLocation> findByIsDefaultTrue();
     
+    /**
+     * Locations whose timezone hasn't been confirmed yet (saved before timezones
+     * were stored, or while Open-Meteo couldn't be reached)
+     */
+    List<WeatherLocation> findByTimezoneSourceIsNull();
+    
     /**
      * Count total locations
      */
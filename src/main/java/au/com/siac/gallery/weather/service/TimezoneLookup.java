@@ -0,0 +1,185 @@
+package au.com.siac.gallery.weather.service;
+
+import au.com.siac.gallery.core.UpstreamHttpClient;
+import au.com.siac.gallery.weather.entity.WeatherLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Coordinate -> IANA timezone
+ *
+ * resolve() asks Open-Meteo (timezone=auto), which uses real zone boundaries;
+ * that is the answer stored on a location. nearest() is an offline stand-in
+ * for a location whose zone hasn't been resolved yet: the zone of the closest
+ * principal city in tzdb's zone.tab (bundled under resources/timezones/,
+ * public domain). Away from a zone's main city it can be wrong (Broome gets
+ * Darwin, Mildura gets Broken Hill), so it is never saved.
+ */
+@Service
+public class TimezoneLookup {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimezoneLookup.class);
+
+    private static final String TABLE = "timezones/zone.tab";
+
+    @Value("${weather.api.forecast-url:https://api.open-meteo.com/v1/forecast}")
+    private String forecastUrl;
+
+    private final UpstreamHttpClient upstreamHttpClient;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final String[] zones;
+
+    public TimezoneLookup(UpstreamHttpClient upstreamHttpClient) {
+        this.upstreamHttpClient = upstreamHttpClient;
+        Set<String> known = ZoneId.getAvailableZoneIds();
+        List<double[]> coordinates = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(TABLE).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // country-code <TAB> coordinates <TAB> TZ [<TAB> comments]
+                String[] columns = line.split("\t");
+                if (columns.length < 3 || !known.contains(columns[2])) {
+                    continue;
+                }
+                double[] coordinate = parseIso6709(columns[1]);
+                if (coordinate != null) {
+                    coordinates.add(coordinate);
+                    names.add(columns[2]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + TABLE, e);
+        }
+
+        int size = names.size();
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.zones = names.toArray(new String[0]);
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = Math.toRadians(coordinates.get(i)[0]);
+            longitudes[i] = Math.toRadians(coordinates.get(i)[1]);
+        }
+        logger.info("Timezone lookup: {} zones", size);
+    }
+
+    /**
+     * Zones for several locations in one Open-Meteo call, in order
+     * Throws when Open-Meteo can't be reached or answers with an unknown zone
+     */
+    public List<String> resolve(List<WeatherLocation> locations) {
+        String url = String.format("%s?latitude=%s&longitude=%s&timezone=auto&forecast_days=1",
+                forecastUrl,
+                locations.stream().map(l -> String.valueOf(l.getLatitude())).collect(Collectors.joining(",")),
+                locations.stream().map(l -> String.valueOf(l.getLongitude())).collect(Collectors.joining(",")));
+
+        // A single location answers with an object, several with an array
+        Object body = upstreamHttpClient.getForObject(url, Object.class);
+        List<?> results = body instanceof List<?> list ? list : List.of(body);
+        if (results.size() != locations.size()) {
+            throw new IllegalStateException("Expected " + locations.size() + " timezone results, got " + results.size());
+        }
+
+        List<String> timezones = new ArrayList<>(results.size());
+        for (Object result : results) {
+            Object timezone = result instanceof Map<?, ?> map ? map.get("timezone") : null;
+            String valid = validate(timezone != null ? timezone.toString() : null);
+            if (valid == null) {
+                throw new IllegalStateException("Open-Meteo returned no usable timezone: " + timezone);
+            }
+            timezones.add(valid);
+        }
+        return timezones;
+    }
+
+    /**
+     * Offline approximation, e.g. -37.76, 144.91 -> "Australia/Melbourne"
+     * Only for display until resolve() has answered; don't store it
+     */
+    public String nearest(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < zones.length; i++) {
+            // Haversine without the final asin/sqrt (monotonic, fine for comparing)
+            double dLat = Math.sin((latitudes[i] - lat) / 2);
+            double dLon = Math.sin((longitudes[i] - lon) / 2);
+            double distance = dLat * dLat + cosLat * Math.cos(latitudes[i]) * dLon * dLon;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best >= 0 ? zones[best] : "UTC";
+    }
+
+    /**
+     * The zone id if the JVM knows it, otherwise null
+     */
+    public static String validate(String timezone) {
+        if (timezone == null || timezone.isBlank()) {
+            return null;
+        }
+        try {
+            return ZoneId.of(timezone.trim()).getId();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * "+4230+00131" or "+422805-0714302" -> {42.5, 1.5167} / {42.468, -71.717}
+     */
+    private static double[] parseIso6709(String value) {
+        int split = Math.max(value.lastIndexOf('+'), value.lastIndexOf('-'));
+        if (split <= 0) {
+            return null;
+        }
+        try {
+            return new double[] {
+                    degrees(value.substring(0, split), 2),
+                    degrees(value.substring(split), 3)
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sign, degree digits, then MM or MMSS
+     */
+    private static double degrees(String value, int degreeDigits) {
+        double sign = value.charAt(0) == '-' ? -1 : 1;
+        String digits = value.substring(1);
+        double degrees = Integer.parseInt(digits.substring(0, degreeDigits));
+        double minutes = Integer.parseInt(digits.substring(degreeDigits, degreeDigits + 2));
+        double seconds = digits.length() > degreeDigits + 2
+                ? Integer.parseInt(digits.substring(degreeDigits + 2, degreeDigits + 4)) : 0;
+        return sign * (degrees + minutes / 60 + seconds / 3600);
+    }
+}
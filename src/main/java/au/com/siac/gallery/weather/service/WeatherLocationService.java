@@ -4,18 +4,29 @@ import au.com.siac.gallery.weather.entity.WeatherLocation;
 import au.com.siac.gallery.weather.repository.WeatherLocationRepository;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class WeatherLocationService {
     
+    private static final String TIMEZONE_GIVEN = "GIVEN";
+    private static final String TIMEZONE_OPEN_METEO = "OPEN_METEO";
+    
     @Autowired
     private WeatherLocationRepository locationRepository;
     
+    @Autowired
+    private TimezoneLookup timezoneLookup;
+    
     /**
      * Initialize with default location (Essendon) if database is empty
      */
@@ -29,11 +40,38 @@ public class WeatherLocationService {
                 1,
                 true
             );
+            defaultLocation.setTimezone("Australia/Melbourne");
+            defaultLocation.setTimezoneSource(TIMEZONE_GIVEN);
             locationRepository.save(defaultLocation);
             System.out.println("✅ Created default weather location: Essendon, VIC");
         }
     }
     
+    /**
+     * Resolve timezones through Open-Meteo for locations that don't have a
+     * confirmed one: rows saved before timezones were stored (or given the
+     * nearest-city guess), and rows saved while Open-Meteo was unreachable
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 600, timeUnit = TimeUnit.SECONDS)
+    public void resolveMissingTimezones() {
+        List<WeatherLocation> unresolved = locationRepository.findByTimezoneSourceIsNull();
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> timezones = timezoneLookup.resolve(unresolved);
+            for (int i = 0; i < unresolved.size(); i++) {
+                WeatherLocation location = unresolved.get(i);
+                location.setTimezone(timezones.get(i));
+                location.setTimezoneSource(TIMEZONE_OPEN_METEO);
+                System.out.println("🌍 Timezone for " + location.getLocationName() + ": " + location.getTimezone());
+            }
+            locationRepository.saveAll(unresolved);
+        } catch (Exception e) {
+            System.out.println("⚠️ Could not resolve timezones, will retry: " + e.getMessage());
+        }
+    }
+    
     /**
      * Get all locations ordered by display order
      */
@@ -48,6 +86,22 @@ public class WeatherLocationService {
         return locationRepository.findById(id);
     }
     
+    /**
+     * Get several locations in one query, in the order of the ids given
+     * (unknown ids are skipped)
+     */
+    public List<WeatherLocation> getLocationsByIds(List<Long> ids) {
+        Map<Long, WeatherLocation> byId = new HashMap<>();
+        for (WeatherLocation location : locationRepository.findAllById(ids)) {
+            byId.put(location.getId(), location);
+        }
+        return ids.stream()
+            .distinct()
+            .map(byId::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+    
     /**
      * Get default location
      */
@@ -75,6 +129,15 @@ public class WeatherLocationService {
             location.setDisplayOrder((int) maxOrder + 1);
         }
         
+        // Keep an explicit zone if it is valid (the geocoder supplies one), otherwise resolve it
+        String timezone = TimezoneLookup.validate(location.getTimezone());
+        if (timezone != null) {
+            location.setTimezone(timezone);
+            location.setTimezoneSource(TIMEZONE_GIVEN);
+        } else {
+            resolveTimezone(location);
+        }
+        
         return locationRepository.save(location);
     }
     
@@ -86,11 +149,24 @@ public class WeatherLocationService {
         WeatherLocation existing = locationRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Location not found with id: " + id));
         
+        boolean moved = !Objects.equals(existing.getLatitude(), updatedLocation.getLatitude())
+            || !Objects.equals(existing.getLongitude(), updatedLocation.getLongitude());
+        
         existing.setLocationName(updatedLocation.getLocationName());
         existing.setLatitude(updatedLocation.getLatitude());
         existing.setLongitude(updatedLocation.getLongitude());
         existing.setDisplayOrder(updatedLocation.getDisplayOrder());
         
+        // An explicit valid zone wins (unless it is just the old zone echoed back for
+        // a moved location); otherwise re-resolve only when the coordinates changed
+        String timezone = TimezoneLookup.validate(updatedLocation.getTimezone());
+        if (timezone != null && !(moved && timezone.equals(existing.getTimezone()))) {
+            existing.setTimezone(timezone);
+            existing.setTimezoneSource(TIMEZONE_GIVEN);
+        } else if (moved || existing.getTimezoneSource() == null) {
+            resolveTimezone(existing);
+        }
+        
         // If setting as default, unset other defaults
         if (updatedLocation.getIsDefault() != null && updatedLocation.getIsDefault()) {
             unsetAllDefaults();
@@ -141,6 +217,21 @@ public class WeatherLocationService {
         return locationRepository.save(location);
     }
     
+    /**
+     * Ask Open-Meteo for a location's zone; if it can't be reached the zone is
+     * left unset and resolveMissingTimezones() retries later
+     */
+    private void resolveTimezone(WeatherLocation location) {
+        try {
+            location.setTimezone(timezoneLookup.resolve(List.of(location)).get(0));
+            location.setTimezoneSource(TIMEZONE_OPEN_METEO);
+        } catch (Exception e) {
+            System.out.println("⚠️ Could not resolve timezone for " + location.getLocationName() + ": " + e.getMessage());
+            location.setTimezone(null);
+            location.setTimezoneSource(null);
+        }
+    }
+    
     /**
      * Unset all default flags
      */
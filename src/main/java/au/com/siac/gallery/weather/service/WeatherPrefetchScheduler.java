@@ -0,0 +1,108 @@
+package au.com.siac.gallery.weather.service;
+
+import au.com.siac.gallery.weather.entity.WeatherLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Weather Prefetch Scheduler
+ * Keeps the weather cache filled so displays don't wait on Open-Meteo
+ *
+ * Every tick it picks the locations that are due and refreshes them with
+ * one batched upstream call (per weather.prefetch.batch-size locations).
+ * How often a location is due depends on when a client last asked for it:
+ * - viewed within weather.prefetch.hot-window-minutes: just before the
+ *   current-weather TTL runs out, so requests never miss
+ * - viewed within the last day: once per forecast TTL
+ * - not viewed for a day (or never): every weather.prefetch.cold-interval-minutes,
+ *   enough to keep a fallback on hand
+ */
+@Service
+public class WeatherPrefetchScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeatherPrefetchScheduler.class);
+
+    private static final long WARM_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Value("${weather.prefetch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${weather.prefetch.hot-window-minutes:30}")
+    private long hotWindowMinutes;
+
+    @Value("${weather.prefetch.cold-interval-minutes:360}")
+    private long coldIntervalMinutes;
+
+    @Value("${weather.prefetch.batch-size:50}")
+    private int batchSize;
+
+    @Autowired
+    private WeatherLocationService locationService;
+
+    @Autowired
+    private WeatherService weatherService;
+
+    /**
+     * Refresh due locations; first run shortly after startup
+     */
+    @Scheduled(initialDelayString = "${weather.prefetch.initial-delay-seconds:10}",
+            fixedDelayString = "${weather.prefetch.tick-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void prefetch() {
+        if (!enabled) {
+            return;
+        }
+
+        List<WeatherLocation> locations = locationService.getAllLocations();
+        weatherService.retainLocations(locations.stream().map(WeatherLocation::getId).collect(Collectors.toSet()));
+
+        long now = System.currentTimeMillis();
+        List<WeatherLocation> due = new ArrayList<>();
+        for (WeatherLocation location : locations) {
+            Long lastFetched = weatherService.getLastFetched(location.getId());
+            if (lastFetched == null || now - lastFetched >= intervalFor(location.getId(), now).toMillis()) {
+                due.add(location);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        int size = Math.max(1, batchSize);
+        for (int start = 0; start < due.size(); start += size) {
+            List<WeatherLocation> batch = due.subList(start, Math.min(start + size, due.size()));
+            try {
+                weatherService.refresh(batch);
+                logger.debug("[WeatherPrefetch] Refreshed {} locations in one call", batch.size());
+            } catch (Exception e) {
+                // Cached entries stay in place; requests fall back to them
+                logger.warn("[WeatherPrefetch] Refresh of {} locations failed: {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * How long a location's data may age before it is refreshed again
+     */
+    private Duration intervalFor(Long locationId, long now) {
+        Long lastViewed = weatherService.getLastViewed(locationId);
+        long sinceView = lastViewed != null ? now - lastViewed : Long.MAX_VALUE;
+        if (sinceView < TimeUnit.MINUTES.toMillis(hotWindowMinutes)) {
+            // 80% of the TTL, so the refresh lands before the entry expires
+            return weatherService.getCurrentTtl().multipliedBy(4).dividedBy(5);
+        }
+        if (sinceView < WARM_WINDOW_MILLIS) {
+            return weatherService.getForecastTtl();
+        }
+        return Duration.ofMinutes(coldIntervalMinutes);
+    }
+}
@@ -0,0 +1,293 @@
+package au.com.siac.gallery.weather.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shared cache of weather responses, one entry per location and endpoint
+ *
+ * Every display polls every location, so without this each poll is an
+ * Open-Meteo call. Within the TTL all callers get the cached response. When
+ * it expires, the first caller fetches and any concurrent callers for the
+ * same key wait for that one fetch (single flight), so upstream traffic is
+ * about one call per key per TTL no matter how many screens are open.
+ *
+ * If the fetch fails, the last good response is served for up to
+ * weather.cache.max-stale-hours, so a flaky upstream doesn't blank the screens.
+ */
+@Service
+public class WeatherResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeatherResponseCache.class);
+
+    private static final class Entry {
+        private final Object value;
+        private final long fetchedAt;
+
+        private Entry(Object value, long fetchedAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final long maxStaleNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong upstreamFailures = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    public WeatherResponseCache(@Value("${weather.cache.max-stale-hours:24}") long maxStaleHours) {
+        this.maxStaleNanos = TimeUnit.HOURS.toNanos(Math.max(0, maxStaleHours));
+    }
+
+    /**
+     * Cached response for key, or the loader's result when missing or older than ttl
+     *
+     * The value type must be the same for every call with a given key.
+     *
+     * @throws RuntimeException from the loader when it fails and nothing usable is cached
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Duration ttl, Supplier<T> loader) {
+        long ttlNanos = ttl.toNanos();
+        Entry cached = entries.get(key);
+        if (isFresh(cached, ttlNanos)) {
+            hits.incrementAndGet();
+            return (T) cached.value;
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Someone is already fetching this key; wait for their answer
+            coalesced.incrementAndGet();
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                return (T) staleOrThrow(key, cached, e.getCause());
+            }
+        }
+
+        try {
+            // The previous flight may have finished between our lookup and putIfAbsent
+            Entry latest = entries.get(key);
+            if (isFresh(latest, ttlNanos)) {
+                mine.complete(latest.value);
+                return (T) latest.value;
+            }
+
+            upstreamCalls.incrementAndGet();
+            T value;
+            try {
+                value = loader.get();
+            } catch (RuntimeException e) {
+                upstreamFailures.incrementAndGet();
+                Object stale = staleOrThrow(key, latest, e);
+                mine.complete(stale);
+                return (T) stale;
+            }
+            store(key, value);
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Errors too (OutOfMemoryError, StackOverflowError), or the waiters would hang
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!mine.isDone()) {
+                mine.completeExceptionally(new IllegalStateException("Weather load aborted for " + key));
+            }
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Several keys at once, with the same single flight as get()
+     *
+     * Fresh entries are used as they are. Keys another caller is already
+     * loading are waited for; the rest are handed to one loader call, and
+     * anyone asking for those keys meanwhile waits for it. A key that can't
+     * be loaded falls back to its stale entry, or is left out.
+     *
+     * @param keys   key -> ttl
+     * @param loader given the keys to load, returns key -> value (it may return more)
+     * @return key -> value for every key that could be served
+     */
+    public Map<String, Object> getAll(Map<String, Duration> keys, Function<Set<String>, Map<String, ?>> loader) {
+        Map<String, Object> found = new HashMap<>();
+        Map<String, CompletableFuture<Object>> waiting = new HashMap<>();
+        Map<String, CompletableFuture<Object>> mine = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Duration> key : keys.entrySet()) {
+            long ttlNanos = key.getValue().toNanos();
+            Entry cached = entries.get(key.getKey());
+            if (isFresh(cached, ttlNanos)) {
+                hits.incrementAndGet();
+                found.put(key.getKey(), cached.value);
+                continue;
+            }
+            misses.incrementAndGet();
+
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> running = inFlight.putIfAbsent(key.getKey(), flight);
+            if (running != null) {
+                coalesced.incrementAndGet();
+                waiting.put(key.getKey(), running);
+                continue;
+            }
+            // The previous flight may have finished between our lookup and putIfAbsent
+            Entry latest = entries.get(key.getKey());
+            if (isFresh(latest, ttlNanos)) {
+                flight.complete(latest.value);
+                inFlight.remove(key.getKey(), flight);
+                found.put(key.getKey(), latest.value);
+            } else {
+                mine.put(key.getKey(), flight);
+            }
+        }
+
+        // Load ours before waiting on anyone else's, so two batches can't wait on each other
+        if (!mine.isEmpty()) {
+            load(mine, loader, found);
+        }
+        for (Map.Entry<String, CompletableFuture<Object>> flight : waiting.entrySet()) {
+            try {
+                found.put(flight.getKey(), flight.getValue().join());
+            } catch (CompletionException e) {
+                Object stale = getStale(flight.getKey());
+                if (stale != null) {
+                    found.put(flight.getKey(), stale);
+                }
+            }
+        }
+
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        for (String key : keys.keySet()) {
+            Object value = found.get(key);
+            if (value != null) {
+                ordered.put(key, value);
+            }
+        }
+        return ordered;
+    }
+
+    private void load(Map<String, CompletableFuture<Object>> flights, Function<Set<String>, Map<String, ?>> loader,
+                      Map<String, Object> found) {
+        try {
+            upstreamCalls.incrementAndGet();
+            Map<String, ?> loaded;
+            try {
+                loaded = loader.apply(flights.keySet());
+            } catch (RuntimeException e) {
+                upstreamFailures.incrementAndGet();
+                logger.warn("Weather upstream failed for {} keys: {}", flights.size(), e.getMessage());
+                loaded = Map.of();
+            }
+            for (Map.Entry<String, CompletableFuture<Object>> flight : flights.entrySet()) {
+                Object value = loaded.get(flight.getKey());
+                if (value != null) {
+                    store(flight.getKey(), value);
+                } else {
+                    value = getStale(flight.getKey());
+                }
+                if (value != null) {
+                    found.put(flight.getKey(), value);
+                    flight.getValue().complete(value);
+                } else {
+                    flight.getValue().completeExceptionally(
+                            new IllegalStateException("No weather available for " + flight.getKey()));
+                }
+            }
+        } finally {
+            // Whatever happened (even an Error), nobody may be left waiting
+            for (Map.Entry<String, CompletableFuture<Object>> flight : flights.entrySet()) {
+                if (!flight.getValue().isDone()) {
+                    flight.getValue().completeExceptionally(
+                            new IllegalStateException("Weather load aborted for " + flight.getKey()));
+                }
+                inFlight.remove(flight.getKey(), flight.getValue());
+            }
+        }
+    }
+
+    /**
+     * Cached value of any age up to weather.cache.max-stale-hours, for when upstream failed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getStale(String key) {
+        Entry cached = entries.get(key);
+        if (cached != null && System.nanoTime() - cached.fetchedAt < maxStaleNanos) {
+            staleServed.incrementAndGet();
+            return (T) cached.value;
+        }
+        return null;
+    }
+
+    /**
+     * Store a value fetched elsewhere (a batched or background refresh)
+     */
+    public void put(String key, Object value) {
+        store(key, value);
+    }
+
+    private void store(String key, Object value) {
+        long now = System.nanoTime();
+        // Keys of renamed/moved/deleted locations (and past days) age out here; the map stays tiny
+        entries.values().removeIf(entry -> now - entry.fetchedAt >= maxStaleNanos);
+        entries.put(key, new Entry(value, now));
+    }
+
+    private static boolean isFresh(Entry entry, long ttlNanos) {
+        return entry != null && System.nanoTime() - entry.fetchedAt < ttlNanos;
+    }
+
+    private Object staleOrThrow(String key, Entry stale, Throwable failure) {
+        if (stale != null && System.nanoTime() - stale.fetchedAt < maxStaleNanos) {
+            staleServed.incrementAndGet();
+            logger.warn("Weather upstream failed for {}, serving response from {}s ago: {}",
+                    key, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - stale.fetchedAt), failure.getMessage());
+            return stale.value;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    /**
+     * Hit/miss and upstream counters for monitoring
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", entries.size());
+        metrics.put("in_flight", inFlight.size());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("upstream_calls", upstreamCalls.get());
+        metrics.put("upstream_failures", upstreamFailures.get());
+        metrics.put("stale_served", staleServed.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,381 @@
+package au.com.siac.gallery.weather.service;
+
+import au.com.siac.gallery.core.UpstreamHttpClient;
+import au.com.siac.gallery.weather.entity.WeatherLocation;
+import au.com.siac.gallery.weather.util.ForecastColumns;
+import au.com.siac.gallery.weather.util.WeatherCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Current conditions and forecasts from Open-Meteo, served from the shared
+ * WeatherResponseCache
+ *
+ * One upstream request fetches current, hourly and daily data together, for
+ * one location or for many (Open-Meteo takes comma-separated coordinates and
+ * answers with one result per location). Every fetch fills both the current
+ * and the forecast entry of each location it covered. WeatherPrefetchScheduler
+ * uses the same path to keep viewed locations warm.
+ */
+@Service
+public class WeatherService {
+
+    private static final String CURRENT_FIELDS =
+            "temperature_2m,relative_humidity_2m,apparent_temperature,weather_code,wind_speed_10m,wind_direction_10m,uv_index";
+    private static final String HOURLY_FIELDS =
+            "temperature_2m,relative_humidity_2m,weather_code,wind_speed_10m,precipitation_probability,precipitation,uv_index";
+    private static final String DAILY_FIELDS =
+            "sunrise,sunset,temperature_2m_max,temperature_2m_min,weather_code";
+
+    // 5-day forecast (Open-Meteo free tier limit), starting today in each location's zone
+    private static final int FORECAST_DAYS = 5;
+
+    /**
+     * Both payloads for one location, from one upstream result
+     */
+    public static final class LocationWeather {
+        private final Map<String, Object> current;
+        private final ForecastColumns forecast;
+
+        private LocationWeather(Map<String, Object> current, ForecastColumns forecast) {
+            this.current = current;
+            this.forecast = forecast;
+        }
+
+        public Map<String, Object> getCurrent() {
+            return current;
+        }
+
+        public ForecastColumns getForecast() {
+            return forecast;
+        }
+    }
+
+    // Open-Meteo API - NO API KEY REQUIRED!
+    @Value("${weather.api.forecast-url:https://api.open-meteo.com/v1/forecast}")
+    private String weatherUrl;
+
+    @Value("${weather.cache.current-ttl-seconds:600}")
+    private long currentTtlSeconds;
+
+    @Value("${weather.cache.forecast-ttl-seconds:3600}")
+    private long forecastTtlSeconds;
+
+    @Autowired
+    private UpstreamHttpClient upstreamHttpClient;
+
+    @Autowired
+    private WeatherResponseCache weatherCache;
+
+    @Autowired
+    private TimezoneLookup timezoneLookup;
+
+    // ZoneId.of parses the id and looks up its rules; resolve each zone once
+    private final Map<String, ZoneId> zoneIds = new ConcurrentHashMap<>();
+
+    // Location id -> epoch millis, for the prefetcher's cadence
+    private final Map<Long, Long> lastViewed = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastFetched = new ConcurrentHashMap<>();
+
+    /**
+     * Current conditions (cached; fetched on a miss)
+     */
+    public Map<String, Object> getCurrentWeather(WeatherLocation location) {
+        recordView(location);
+        return weatherCache.get(currentKey(location), getCurrentTtl(),
+                () -> fetch(List.of(location)).get(0).getCurrent());
+    }
+
+    /**
+     * Hourly and daily forecast (cached; fetched on a miss)
+     */
+    public ForecastColumns getForecast(WeatherLocation location) {
+        recordView(location);
+        return weatherCache.get(forecastKey(location), getForecastTtl(),
+                () -> fetch(List.of(location)).get(0).getForecast());
+    }
+
+    /**
+     * Weather for several locations at once: cached parts are used as they
+     * are, every location missing a part is fetched in one upstream call.
+     * Parts another request is already fetching are waited for rather than
+     * fetched again. Locations that can't be served (upstream down, nothing
+     * cached) are left out of the result.
+     *
+     * @return location id -> weather, in the order given; unrequested parts are null
+     */
+    public Map<Long, LocationWeather> getWeather(List<WeatherLocation> locations,
+                                                 boolean includeCurrent, boolean includeForecast) {
+        Map<String, Duration> keys = new LinkedHashMap<>();
+        Map<String, WeatherLocation> byKey = new HashMap<>();
+        for (WeatherLocation location : locations) {
+            recordView(location);
+            if (includeCurrent) {
+                keys.put(currentKey(location), getCurrentTtl());
+                byKey.put(currentKey(location), location);
+            }
+            if (includeForecast) {
+                keys.put(forecastKey(location), getForecastTtl());
+                byKey.put(forecastKey(location), location);
+            }
+        }
+
+        Map<String, Object> values = weatherCache.getAll(keys, missingKeys -> {
+            // Both parts of a location come from the same call
+            List<WeatherLocation> missing = missingKeys.stream().map(byKey::get).distinct().toList();
+            List<LocationWeather> fetched = fetch(missing);
+            Map<String, Object> loaded = new HashMap<>();
+            for (int i = 0; i < missing.size(); i++) {
+                loaded.put(currentKey(missing.get(i)), fetched.get(i).getCurrent());
+                loaded.put(forecastKey(missing.get(i)), fetched.get(i).getForecast());
+            }
+            return loaded;
+        });
+
+        Map<Long, LocationWeather> ordered = new LinkedHashMap<>();
+        for (WeatherLocation location : locations) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> current = includeCurrent ? (Map<String, Object>) values.get(currentKey(location)) : null;
+            ForecastColumns forecast = includeForecast ? (ForecastColumns) values.get(forecastKey(location)) : null;
+            if ((!includeCurrent || current != null) && (!includeForecast || forecast != null)) {
+                ordered.put(location.getId(), new LocationWeather(current, forecast));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Fetch a set of locations in one upstream call and store the results
+     */
+    public void refresh(List<WeatherLocation> locations) {
+        if (!locations.isEmpty()) {
+            fetch(locations);
+        }
+    }
+
+    /**
+     * One upstream call for all locations; results are cached and returned in order
+     */
+    private List<LocationWeather> fetch(List<WeatherLocation> locations) {
+        List<String> timezones = new ArrayList<>(locations.size());
+        for (WeatherLocation location : locations) {
+            timezones.add(getTimezone(location));
+        }
+
+        // unixtime: times arrive as epoch seconds, nothing to parse
+        String url = String.format(
+                "%s?latitude=%s&longitude=%s&current=%s&hourly=%s&daily=%s&timezone=%s&forecast_days=%d&timeformat=unixtime",
+                weatherUrl,
+                locations.stream().map(l -> String.valueOf(l.getLatitude())).collect(Collectors.joining(",")),
+                locations.stream().map(l -> String.valueOf(l.getLongitude())).collect(Collectors.joining(",")),
+                CURRENT_FIELDS, HOURLY_FIELDS, DAILY_FIELDS,
+                String.join(",", timezones),
+                FORECAST_DAYS
+        );
+
+        // A single location answers with an object, several with an array
+        Object body = upstreamHttpClient.getForObject(url, Object.class);
+        List<?> results = body instanceof List<?> list ? list : List.of(body);
+        if (results.size() != locations.size()) {
+            throw new IllegalStateException("Expected " + locations.size() + " weather results, got " + results.size());
+        }
+
+        long now = System.currentTimeMillis();
+        List<LocationWeather> weather = new ArrayList<>(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            WeatherLocation location = locations.get(i);
+            String timezone = timezones.get(i);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> response = (Map<String, Object>) results.get(i);
+
+            LocationWeather entry = new LocationWeather(
+                    buildCurrentWeather(response, location.getLocationName(), timezone),
+                    ForecastColumns.from(response, location.getLocationName(), timezone, zoneFor(timezone)));
+            weatherCache.put(currentKey(location), entry.getCurrent());
+            weatherCache.put(forecastKey(location), entry.getForecast());
+            if (location.getId() != null) {
+                lastFetched.put(location.getId(), now);
+            }
+            weather.add(entry);
+        }
+        return weather;
+    }
+
+    /**
+     * Stored zone of a location; the nearest-city guess only stands in until Open-Meteo has resolved it
+     */
+    public String getTimezone(WeatherLocation location) {
+        if (location.getTimezone() != null) {
+            return location.getTimezone();
+        }
+        return timezoneLookup.nearest(location.getLatitude(), location.getLongitude());
+    }
+
+    private ZoneId zoneFor(String timezone) {
+        return zoneIds.computeIfAbsent(timezone, ZoneId::of);
+    }
+
+    private String currentKey(WeatherLocation location) {
+        return cacheKey("current", location);
+    }
+
+    /**
+     * The forecast covers today..today+4 in the location's zone, so a new day is a new entry
+     */
+    private String forecastKey(WeatherLocation location) {
+        return cacheKey("forecast", location) + "|" + LocalDate.now(zoneFor(getTimezone(location)));
+    }
+
+    private String cacheKey(String endpoint, WeatherLocation location) {
+        return endpoint + "|" + location.getLatitude() + "," + location.getLongitude()
+                + "|" + getTimezone(location) + "|" + location.getLocationName();
+    }
+
+    private void recordView(WeatherLocation location) {
+        if (location.getId() != null) {
+            lastViewed.put(location.getId(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * When the location was last requested by a client (epoch millis), or null
+     */
+    public Long getLastViewed(Long locationId) {
+        return lastViewed.get(locationId);
+    }
+
+    /**
+     * When the location was last fetched from upstream (epoch millis), or null
+     */
+    public Long getLastFetched(Long locationId) {
+        return lastFetched.get(locationId);
+    }
+
+    /**
+     * Drop view/fetch history of locations that no longer exist
+     */
+    public void retainLocations(Set<Long> locationIds) {
+        lastViewed.keySet().retainAll(locationIds);
+        lastFetched.keySet().retainAll(locationIds);
+    }
+
+    public Duration getCurrentTtl() {
+        return Duration.ofSeconds(currentTtlSeconds);
+    }
+
+    public Duration getForecastTtl() {
+        return Duration.ofSeconds(forecastTtlSeconds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> buildCurrentWeather(Map<String, Object> response, String locationName, String timezone) {
+        Map<String, Object> current = (Map<String, Object>) response.get("current");
+        Map<String, Object> daily = (Map<String, Object>) response.get("daily");
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", locationName);
+        result.put("timezone", timezone);
+
+        Number temp = (Number) current.get("temperature_2m");
+        Number humidity = (Number) current.get("relative_humidity_2m");
+        Number feelsLike = (Number) current.get("apparent_temperature");
+        Number uvIndex = (Number) current.get("uv_index");
+        Number windDirection = (Number) current.get("wind_direction_10m");
+        Number windSpeed = (Number) current.get("wind_speed_10m");
+
+        result.put("main", Map.of(
+                "temp", temp != null ? temp : 0,
+                "feels_like", feelsLike != null ? feelsLike : temp,
+                "humidity", humidity != null ? humidity : 0
+        ));
+
+        int weatherCode = ((Number) current.get("weather_code")).intValue();
+        result.put("weather", WeatherCode.of(weatherCode).toWeatherList());
+
+        result.put("wind", Map.of(
+                "speed", windSpeed != null ? windSpeed : 0,
+                "deg", windDirection != null ? windDirection : 0
+        ));
+
+        result.put("uv_index", uvIndex != null ? uvIndex : 0);
+
+        // Add weather alerts based on conditions
+        List<Map<String, String>> alerts = new ArrayList<>();
+
+        // High UV alert
+        if (uvIndex != null && uvIndex.doubleValue() >= 8) {
+            alerts.add(Map.of(
+                "type", "UV",
+                "severity", "high",
+                "message", "Very High UV Index - Wear sunscreen and protective clothing"
+            ));
+        }
+
+        // High wind alert
+        if (windSpeed != null && windSpeed.doubleValue() > 50) {
+            alerts.add(Map.of(
+                "type", "Wind",
+                "severity", "warning",
+                "message", String.format("Strong winds - Gusts up to %d km/h", Math.round(windSpeed.doubleValue() * 3.6))
+            ));
+        }
+
+        // Extreme temperature alerts
+        if (temp != null) {
+            double tempC = temp.doubleValue();
+            if (tempC >= 35) {
+                alerts.add(Map.of(
+                    "type", "Heat",
+                    "severity", "warning",
+                    "message", "Extreme heat - Stay hydrated and avoid prolonged sun exposure"
+                ));
+            } else if (tempC <= 5) {
+                alerts.add(Map.of(
+                    "type", "Cold",
+                    "severity", "advisory",
+                    "message", "Very cold conditions - Dress warmly"
+                ));
+            }
+        }
+
+        // Thunderstorm alert
+        if (weatherCode >= 95 && weatherCode <= 99) {
+            alerts.add(Map.of(
+                "type", "Thunderstorm",
+                "severity", "warning",
+                "message", "Thunderstorm activity - Seek shelter and avoid outdoor activities"
+            ));
+        }
+
+        result.put("alerts", alerts);
+
+        // Today's sunrise and sunset, already epoch seconds (timeformat=unixtime)
+        if (daily != null) {
+            List<Number> sunriseList = (List<Number>) daily.get("sunrise");
+            List<Number> sunsetList = (List<Number>) daily.get("sunset");
+            // Null during polar day/night
+            if (sunriseList != null && !sunriseList.isEmpty() && sunriseList.get(0) != null
+                    && sunsetList != null && !sunsetList.isEmpty() && sunsetList.get(0) != null) {
+                result.put("sys", Map.of(
+                        "sunrise", sunriseList.get(0).longValue(),
+                        "sunset", sunsetList.get(0).longValue()
+                ));
+            }
+        }
+
+        return result;
+    }
+}
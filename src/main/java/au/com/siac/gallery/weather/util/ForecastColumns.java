@@ -0,0 +1,263 @@
+package au.com.siac.gallery.weather.util;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One forecast for one location, held as parallel arrays (one slot per hour
+ * or per day) instead of a map per sample
+ *
+ * Built once per upstream fetch from an Open-Meteo response requested with
+ * timeformat=unixtime, so no timestamp is parsed. Both response shapes are
+ * derived from it on first use and then reused for every request until the
+ * forecast is refreshed:
+ *
+ * - toColumnar(): {"hourly": {"dt": [...], "temp": [...], ...}, "daily": {...},
+ *   "weather_codes": {"61": {...}}} - a few arrays instead of ~120 nested maps
+ * - toLegacy(): the original {"list": [...], "daily": [...]} shape, for
+ *   clients that haven't moved to ?format=columnar
+ *
+ * Columns that Open-Meteo may leave null at the end of the range (pop, rain,
+ * uv_index) are boxed so the null survives; the rest are primitive.
+ */
+public final class ForecastColumns {
+
+    private final String locationName;
+    private final String timezone;
+
+    // Hourly
+    private final long[] time;
+    private final double[] temperature;
+    private final double[] humidity;
+    private final int[] weatherCode;
+    private final double[] windSpeed;
+    private final Double[] precipitationProbability;
+    private final Double[] precipitation;
+    private final Double[] uvIndex;
+
+    // Daily; time is local noon
+    private final long[] dailyTime;
+    private final double[] dailyMax;
+    private final double[] dailyMin;
+    private final int[] dailyWeatherCode;
+
+    private volatile Map<String, Object> columnarView;
+    private volatile Map<String, Object> legacyView;
+
+    private ForecastColumns(String locationName, String timezone,
+                            long[] time, double[] temperature, double[] humidity, int[] weatherCode,
+                            double[] windSpeed, Double[] precipitationProbability, Double[] precipitation,
+                            Double[] uvIndex, long[] dailyTime, double[] dailyMax, double[] dailyMin,
+                            int[] dailyWeatherCode) {
+        this.locationName = locationName;
+        this.timezone = timezone;
+        this.time = time;
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.weatherCode = weatherCode;
+        this.windSpeed = windSpeed;
+        this.precipitationProbability = precipitationProbability;
+        this.precipitation = precipitation;
+        this.uvIndex = uvIndex;
+        this.dailyTime = dailyTime;
+        this.dailyMax = dailyMax;
+        this.dailyMin = dailyMin;
+        this.dailyWeatherCode = dailyWeatherCode;
+    }
+
+    /**
+     * Columns from a parsed Open-Meteo forecast response (timeformat=unixtime)
+     *
+     * @param zone the location's zone, resolved once by the caller
+     */
+    @SuppressWarnings("unchecked")
+    public static ForecastColumns from(Map<String, Object> response, String locationName, String timezone, ZoneId zone) {
+        Map<String, Object> hourly = (Map<String, Object>) response.get("hourly");
+        List<Number> times = (List<Number>) hourly.get("time");
+        int hours = times.size();
+
+        long[] time = new long[hours];
+        for (int i = 0; i < hours; i++) {
+            time[i] = times.get(i).longValue();
+        }
+
+        long[] dailyTime = new long[0];
+        double[] dailyMax = new double[0];
+        double[] dailyMin = new double[0];
+        int[] dailyWeatherCode = new int[0];
+        Map<String, Object> daily = (Map<String, Object>) response.get("daily");
+        if (daily != null && daily.get("time") != null
+                && daily.get("temperature_2m_max") != null && daily.get("temperature_2m_min") != null) {
+            List<Number> days = (List<Number>) daily.get("time");
+            dailyTime = new long[days.size()];
+            for (int i = 0; i < dailyTime.length; i++) {
+                // Midnight local -> noon local, as the frontend has always received
+                dailyTime[i] = Instant.ofEpochSecond(days.get(i).longValue()).atZone(zone)
+                        .toLocalDate().atTime(LocalTime.NOON).atZone(zone).toEpochSecond();
+            }
+            dailyMax = doubles((List<Number>) daily.get("temperature_2m_max"), dailyTime.length);
+            dailyMin = doubles((List<Number>) daily.get("temperature_2m_min"), dailyTime.length);
+            dailyWeatherCode = ints((List<Number>) daily.get("weather_code"), dailyTime.length);
+        }
+
+        return new ForecastColumns(locationName, timezone,
+                time,
+                doubles((List<Number>) hourly.get("temperature_2m"), hours),
+                doubles((List<Number>) hourly.get("relative_humidity_2m"), hours),
+                ints((List<Number>) hourly.get("weather_code"), hours),
+                doubles((List<Number>) hourly.get("wind_speed_10m"), hours),
+                boxed((List<Number>) hourly.get("precipitation_probability"), hours),
+                boxed((List<Number>) hourly.get("precipitation"), hours),
+                boxed((List<Number>) hourly.get("uv_index"), hours),
+                dailyTime, dailyMax, dailyMin, dailyWeatherCode);
+    }
+
+    private static double[] doubles(List<Number> values, int length) {
+        double[] column = new double[length];
+        for (int i = 0; i < length; i++) {
+            column[i] = values.get(i).doubleValue();
+        }
+        return column;
+    }
+
+    private static int[] ints(List<Number> values, int length) {
+        int[] column = new int[length];
+        for (int i = 0; i < length; i++) {
+            column[i] = values.get(i).intValue();
+        }
+        return column;
+    }
+
+    /**
+     * Nullable column; null when Open-Meteo didn't send it at all
+     */
+    private static Double[] boxed(List<Number> values, int length) {
+        if (values == null) {
+            return null;
+        }
+        Double[] column = new Double[length];
+        for (int i = 0; i < length && i < values.size(); i++) {
+            Number value = values.get(i);
+            column[i] = value != null ? value.doubleValue() : null;
+        }
+        return column;
+    }
+
+    /**
+     * Compact payload for ?format=columnar (built once, shared)
+     */
+    public Map<String, Object> toColumnar() {
+        Map<String, Object> view = columnarView;
+        if (view == null) {
+            view = buildColumnar();
+            columnarView = view;
+        }
+        return view;
+    }
+
+    /**
+     * The original list-of-maps payload (built once, shared)
+     */
+    public Map<String, Object> toLegacy() {
+        Map<String, Object> view = legacyView;
+        if (view == null) {
+            view = buildLegacy();
+            legacyView = view;
+        }
+        return view;
+    }
+
+    private Map<String, Object> buildColumnar() {
+        Map<String, Object> hourly = new LinkedHashMap<>();
+        hourly.put("dt", time);
+        hourly.put("temp", temperature);
+        hourly.put("humidity", humidity);
+        hourly.put("weather_code", weatherCode);
+        hourly.put("wind_speed", windSpeed);
+        hourly.put("pop", precipitationProbability);
+        hourly.put("rain", precipitation);
+        hourly.put("uv_index", uvIndex);
+
+        Map<String, Object> daily = new LinkedHashMap<>();
+        daily.put("dt", dailyTime);
+        daily.put("temp_max", dailyMax);
+        daily.put("temp_min", dailyMin);
+        daily.put("weather_code", dailyWeatherCode);
+
+        // Descriptors only for codes that occur, keyed by code
+        Map<String, Object> codes = new LinkedHashMap<>();
+        for (int code : weatherCode) {
+            codes.computeIfAbsent(Integer.toString(code), k -> WeatherCode.of(code).toMap());
+        }
+        for (int code : dailyWeatherCode) {
+            codes.computeIfAbsent(Integer.toString(code), k -> WeatherCode.of(code).toMap());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("format", "columnar");
+        result.put("hourly", hourly);
+        result.put("daily", daily);
+        result.put("weather_codes", codes);
+        result.put("city", Map.of("name", locationName));
+        result.put("timezone", timezone);
+        return result;
+    }
+
+    private Map<String, Object> buildLegacy() {
+        List<Map<String, Object>> forecastList = new ArrayList<>(time.length);
+        for (int i = 0; i < time.length; i++) {
+            Map<String, Object> forecast = new HashMap<>();
+            forecast.put("dt", time[i]);
+            forecast.put("main", Map.of(
+                    "temp", temperature[i],
+                    "temp_min", temperature[i],
+                    "temp_max", temperature[i],
+                    "humidity", humidity[i]
+            ));
+            forecast.put("weather", WeatherCode.of(weatherCode[i]).toWeatherList());
+            forecast.put("wind", Map.of("speed", windSpeed[i]));
+            forecast.put("uv_index", uvIndex != null ? (Object) uvIndex[i] : Integer.valueOf(0));
+
+            Map<String, Object> rain = new HashMap<>();
+            if (precipitation != null) {
+                rain.put("3h", precipitation[i]);
+            }
+            forecast.put("rain", rain);
+
+            if (precipitationProbability != null) {
+                forecast.put("pop", precipitationProbability[i]);
+            }
+            forecastList.add(forecast);
+        }
+
+        List<Map<String, Object>> dailyList = new ArrayList<>(dailyTime.length);
+        for (int i = 0; i < dailyTime.length; i++) {
+            Map<String, Object> daily = new HashMap<>();
+            daily.put("dt", dailyTime[i]);
+            daily.put("temp", Map.of("max", dailyMax[i], "min", dailyMin[i]));
+            daily.put("weather", WeatherCode.of(dailyWeatherCode[i]).toWeatherList());
+            dailyList.add(daily);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", forecastList);
+        result.put("daily", dailyList);
+        result.put("city", Map.of("name", locationName));
+        result.put("timezone", timezone);
+        return result;
+    }
+
+    public int getHours() {
+        return time.length;
+    }
+
+    public int getDays() {
+        return dailyTime.length;
+    }
+}
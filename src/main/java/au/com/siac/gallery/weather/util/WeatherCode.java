@@ -0,0 +1,97 @@
+package au.com.siac.gallery.weather.util;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WMO weather interpretation codes (as used by Open-Meteo) with the
+ * OpenWeatherMap-style main/description/icon the frontend expects.
+ *
+ * Built once; of() is an array lookup and the "weather" list each response
+ * embeds is a shared immutable instance, so nothing is allocated per sample.
+ */
+public final class WeatherCode {
+
+    private static final WeatherCode UNKNOWN = new WeatherCode(-1, "Unknown", "unknown", "01d");
+
+    // WMO codes run 0-99
+    private static final WeatherCode[] BY_CODE = new WeatherCode[100];
+
+    static {
+        define("Clear", "clear sky", "01d", 0);
+        define("Clear", "mainly clear", "02d", 1);
+        define("Clouds", "partly cloudy", "02d", 2);
+        define("Clouds", "overcast", "04d", 3);
+        define("Fog", "foggy", "50d", 45, 48);
+        define("Drizzle", "drizzle", "09d", 51, 53, 55);
+        define("Rain", "light rain", "10d", 61);
+        define("Rain", "moderate rain", "10d", 63);
+        define("Rain", "heavy rain", "10d", 65);
+        define("Snow", "light snow", "13d", 71);
+        define("Snow", "moderate snow", "13d", 73);
+        define("Snow", "heavy snow", "13d", 75);
+        define("Rain", "rain showers", "09d", 80, 81, 82);
+        define("Thunderstorm", "thunderstorm", "11d", 95);
+        define("Thunderstorm", "thunderstorm with hail", "11d", 96, 99);
+    }
+
+    private final int code;
+    private final String main;
+    private final String description;
+    private final String icon;
+    private final Map<String, String> asMap;
+    private final List<Map<String, String>> asWeatherList;
+
+    private WeatherCode(int code, String main, String description, String icon) {
+        this.code = code;
+        this.main = main;
+        this.description = description;
+        this.icon = icon;
+        this.asMap = Map.of("main", main, "description", description, "icon", icon);
+        this.asWeatherList = List.of(asMap);
+    }
+
+    private static void define(String main, String description, String icon, int... codes) {
+        for (int code : codes) {
+            BY_CODE[code] = new WeatherCode(code, main, description, icon);
+        }
+    }
+
+    /**
+     * Descriptor for a WMO code; codes without one map to "Unknown"
+     */
+    public static WeatherCode of(int code) {
+        WeatherCode weatherCode = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        return weatherCode != null ? weatherCode : UNKNOWN;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMain() {
+        return main;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    /**
+     * {"main", "description", "icon"} (shared, immutable)
+     */
+    public Map<String, String> toMap() {
+        return asMap;
+    }
+
+    /**
+     * The "weather": [ {...} ] value of current/forecast entries (shared, immutable)
+     */
+    public List<Map<String, String>> toWeatherList() {
+        return asWeatherList;
+    }
+}
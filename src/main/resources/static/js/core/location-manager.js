@@ -140,6 +140,9 @@ async function updateEnhancedDropdown() {
     
     listContainer.innerHTML = '';
     
+    // Current weather for every uncached location in one request
+    await preloadCardWeather();
+    
     // Load weather for all locations
     for (const location of allLocations) {
         const card = await createLocationCard(location);
@@ -195,6 +198,28 @@ async function createLocationCard(location) {
     return card;
 }
 
+// ===== PRELOAD WEATHER FOR CARDS =====
+async function preloadCardWeather() {
+    const ids = allLocations
+        .map(loc => loc.id)
+        .filter(id => !locationWeatherCache[id]);
+    if (ids.length === 0) return;
+    
+    try {
+        const response = await fetch(`/api/weather/batch?ids=${ids.join(',')}&parts=current`);
+        const data = await response.json();
+        
+        (data.locations || []).forEach(entry => {
+            if (!entry.error && entry.current) {
+                locationWeatherCache[entry.id] = entry.current;
+            }
+        });
+    } catch (error) {
+        // Cards fall back to fetching one by one
+        console.error('Error preloading location weather:', error);
+    }
+}
+
 // ===== LOAD WEATHER FOR CARD =====
 async function loadWeatherForCard(location, card) {
     try {
@@ -407,6 +432,7 @@ async function addLocationFromSearch(result) {
                 locationName: locationName,
                 latitude: result.latitude,
                 longitude: result.longitude,
+                timezone: result.timezone, // From the geocoder; server falls back to its own lookup
                 isDefault: false
             })
         });
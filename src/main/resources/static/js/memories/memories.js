@@ -5,6 +5,11 @@ const MemoriesModule = (function() {
     let memoriesData = null;
     let BATCH_SIZE = 12; // Default, will be loaded from server config
     
+    // Grid cards are ~200px squares with object-fit: cover
+    const GRID_CARD_PX = 250;
+    // Thumbnail pyramid levels live under .thumbnails/<size>/
+    const PYRAMID_PATH = /^\.thumbnails\/\d+\//;
+    
     /**
      * Initialize the memories module
      */
@@ -84,6 +89,23 @@ const MemoriesModule = (function() {
         }
     }
     
+    /**
+     * Image URL for a memory rendered in a box of cssPx (object-fit: cover)
+     * Requests the thumbnail level that covers the box on this screen; videos
+     * and rows indexed before the pyramid existed keep their stored thumbnail
+     */
+    function thumbnailUrl(memory, cssPx) {
+        if (memory.thumbnailPath && PYRAMID_PATH.test(memory.thumbnailPath) && !memory.isVideo) {
+            // Cover crops the long side, so ask for ~1.5x on the longest edge
+            const size = Math.round(cssPx * 1.5 * (window.devicePixelRatio || 1));
+            return `/images/${memory.filePath}?size=${size}`;
+        }
+        if (memory.thumbnailPath) {
+            return `/images/${memory.thumbnailPath}`;
+        }
+        return memory.isVideo ? '' : `/images/${memory.filePath}`;
+    }
+    
     /**
      * Update the memory preview image
      */
@@ -93,9 +115,7 @@ const MemoriesModule = (function() {
         
         if (previewImg && memory.filePath) {
             // Use thumbnail for widget preview (faster loading)
-            const imagePath = memory.thumbnailPath || memory.filePath;
-            const imageUrl = `/images/${imagePath}`;
-            previewImg.src = imageUrl;
+            previewImg.src = thumbnailUrl(memory, previewImg.clientWidth || GRID_CARD_PX);
             previewImg.alt = `Memory from ${memory.year}`;
         }
         
@@ -319,8 +339,7 @@ const MemoriesModule = (function() {
         
         const img = document.createElement('img');
         // Use thumbnail for grid display (faster loading)
-        const imagePath = memory.thumbnailPath || memory.filePath;
-        img.src = `/images/${imagePath}`;
+        img.src = thumbnailUrl(memory, GRID_CARD_PX);
         img.alt = memory.isVideo ? `Video from ${memory.year}` : `Memory from ${memory.year}`;
         img.className = 'memory-photo-img';
         
@@ -357,6 +376,7 @@ const MemoriesModule = (function() {
         const source = document.createElement('div');
         source.className = 'memory-source';
         source.textContent = memory.dateSource === 'EXIF' ? '📷 EXIF Data' : 
+                            memory.dateSource === 'METADATA' ? '🎬 Video Metadata' : 
                             memory.dateSource === 'FILE_CREATION' ? '📁 File Date' : 
                             '🕒 Modified Date';
         info.appendChild(source);
@@ -8,8 +8,22 @@ const ImageCache = (() => {
     const MAX_CACHE_SIZE = 50;
     const MIN_CACHE_SIZE = 15;
     
+    // Physical screen width - the server returns images downscaled to fit it
+    const DISPLAY_WIDTH = Math.round(window.screen.width * (window.devicePixelRatio || 1));
+    const VIDEO_EXTENSIONS = /\.(mp4|mov|avi|mkv|webm|m4v|wmv)$/i;
+    
     // ===== PRIVATE FUNCTIONS =====
     
+    /**
+     * Build the URL for an image sized to this display (videos are served as-is)
+     * @param {string} imagePath - Relative path to image
+     * @returns {string} Image URL
+     */
+    function urlFor(imagePath) {
+        const url = "/images/" + imagePath;
+        return VIDEO_EXTENSIONS.test(imagePath) ? url : url + "?w=" + DISPLAY_WIDTH;
+    }
+    
     /**
      * Preload a single image
      * @param {string} imagePath - Relative path to image
@@ -17,7 +31,7 @@ const ImageCache = (() => {
      */
     function preloadSingleImage(imagePath) {
         return new Promise((resolve, reject) => {
-            const url = "/images/" + imagePath;
+            const url = urlFor(imagePath);
             
             // Return cached if exists
             if (cache.has(url)) {
@@ -77,8 +91,7 @@ const ImageCache = (() => {
         
         
         // Filter out video files - they don't need image preloading
-        const videoExtensions = /\.(mp4|mov|avi|mkv|webm|m4v|wmv)$/i;
-        const imagePathsOnly = imagePaths.filter(path => !videoExtensions.test(path));
+        const imagePathsOnly = imagePaths.filter(path => !VIDEO_EXTENSIONS.test(path));
         
         if (imagePathsOnly.length === 0) {
             console.log('📥 No images to preload (all videos)');
@@ -109,7 +122,7 @@ const ImageCache = (() => {
      * @returns {HTMLImageElement|null} Cached image or null
      */
     function get(imagePath) {
-        const url = "/images/" + imagePath;
+        const url = urlFor(imagePath);
         return cache.get(url) || null;
     }
     
@@ -119,7 +132,7 @@ const ImageCache = (() => {
      * @returns {boolean} True if image is cached
      */
     function has(imagePath) {
-        const url = "/images/" + imagePath;
+        const url = urlFor(imagePath);
         return cache.has(url);
     }
     
@@ -129,7 +142,7 @@ const ImageCache = (() => {
      * @param {HTMLImageElement} img - Image element
      */
     function set(imagePath, img) {
-        const url = "/images/" + imagePath;
+        const url = urlFor(imagePath);
         cache.set(url, img);
     }
     
@@ -176,7 +189,7 @@ const ImageCache = (() => {
      * @returns {Promise<void>}
      */
     async function loadAndDisplay(imagePath, imgElement) {
-        const url = "/images/" + imagePath;
+        const url = urlFor(imagePath);
         
         imgElement.classList.remove('loaded');
         
@@ -211,6 +224,7 @@ const ImageCache = (() => {
     // Return public API
     return {
         preloadImages,
+        urlFor,
         get,
         has,
         set,
@@ -116,7 +116,7 @@ const SlideshowCore = (() => {
             imageHistory.pop(); // Remove current
             const prevImage = imageHistory[imageHistory.length - 1];
             
-            const url = "/images/" + prevImage;
+            const url = ImageCache.urlFor(prevImage);
             imgEl.src = url;
             
             console.log('⬅️ Previous image:', prevImage);
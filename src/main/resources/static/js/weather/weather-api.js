@@ -68,27 +68,39 @@ const WeatherAPI = (() => {
     }
     
     /**
-     * Fetch both current and forecast data
+     * Fetch both current and forecast data (one batch request)
      * @param {number} locationId - Location ID
      * @returns {Promise<Object>} Combined weather data
      */
     async function fetchAll(locationId) {
         console.log(`🌤️ Fetching weather for location ID: ${locationId}`);
         
-        const [current, forecast] = await Promise.all([
-            fetchCurrent(locationId),
-            fetchForecast(locationId)
-        ]);
-        
-        if (!current || !forecast) {
+        try {
+            const response = await fetch(`/api/weather/batch?ids=${locationId}&parts=current,forecast`);
+            const data = await response.json();
+            const entry = data.locations ? data.locations[0] : null;
+            
+            if (!entry || entry.error) {
+                console.error('❌ Error fetching weather:', data.error || (entry ? entry.error : 'Location not found'));
+                return null;
+            }
+            
+            if (entry.timezone) {
+                currentLocationTimezone = entry.timezone;
+                console.log('🌍 Timezone set to:', currentLocationTimezone);
+            }
+            
+            console.log('✅ Weather fetched for:', entry.name);
+            return {
+                current: entry.current,
+                forecast: entry.forecast,
+                timezone: currentLocationTimezone
+            };
+            
+        } catch (error) {
+            console.error('❌ Error fetching weather:', error);
             return null;
         }
-        
-        return {
-            current,
-            forecast,
-            timezone: currentLocationTimezone
-        };
     }
     
     // ===== PUBLIC API =====
@@ -0,0 +1,115 @@
+package au.com.siac.gallery.memories.service;
+
+import au.com.siac.gallery.media.service.ThumbnailPyramidService;
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+import au.com.siac.gallery.memories.entity.IndexedDirectory;
+import au.com.siac.gallery.memories.repository.IndexedDirectoryRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository.IndexedFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Journal reconciliation when a known folder is missing vs. merely unreadable
+ */
+class IncrementalIndexScanTest {
+
+    @TempDir
+    Path root;
+
+    private PhotoMetadataRepository photoMetadataRepository;
+    private IndexedDirectoryRepository indexedDirectoryRepository;
+    private ThumbnailPyramidService thumbnailPyramidService;
+    private PhotoIndexPipeline pipeline;
+    private IncrementalIndexScan scan;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        photoMetadataRepository = mock(PhotoMetadataRepository.class);
+        indexedDirectoryRepository = mock(IndexedDirectoryRepository.class);
+        thumbnailPyramidService = mock(ThumbnailPyramidService.class);
+        pipeline = mock(PhotoIndexPipeline.class);
+        MediaTypeClassifier classifier = mock(MediaTypeClassifier.class);
+
+        when(photoMetadataRepository.findByFolderIsNull(any())).thenReturn(List.of());
+
+        IndexedFile photo = mock(IndexedFile.class);
+        when(photo.getId()).thenReturn(7L);
+        when(photo.getFilePath()).thenReturn("2020/trip/a.jpg");
+        when(photoMetadataRepository.findIndexedFilesByFolder("2020/trip")).thenReturn(List.of(photo));
+
+        // Journal from a previous run: "" -> 2020 -> 2020/trip (stale fingerprints, so both parents are listed)
+        when(indexedDirectoryRepository.findAll()).thenReturn(List.of(
+                journalEntry("", 1, List.of("2020")),
+                journalEntry("2020", 1, List.of("trip")),
+                journalEntry("2020/trip", 1, List.of())));
+
+        Files.createDirectory(root.resolve("2020"));
+
+        scan = new IncrementalIndexScan(root, photoMetadataRepository, indexedDirectoryRepository,
+                classifier, thumbnailPyramidService);
+    }
+
+    @Test
+    void removedFolderIsDroppedWithItsRows() throws Exception {
+        scan.run(pipeline, false);
+
+        verify(photoMetadataRepository).deleteAllByIdInBatch(List.of(7L));
+        verify(thumbnailPyramidService).delete("2020/trip/a.jpg");
+        assertThat(deletedJournalPaths()).containsExactly("2020/trip");
+    }
+
+    @Test
+    void unreadableFolderKeepsItsRows() throws Exception {
+        // A symlink loop fails with a plain FileSystemException (ELOOP), like EACCES or a stale
+        // handle would, and unlike permissions it also fails when the tests run as root
+        Files.createSymbolicLink(root.resolve("2020/trip"), Paths.get("trip"));
+
+        scan.run(pipeline, false);
+
+        verify(photoMetadataRepository, never()).findIndexedFilesByFolder("2020/trip");
+        verify(photoMetadataRepository, never()).deleteAllByIdInBatch(anyList());
+        verify(thumbnailPyramidService, never()).delete(any());
+        assertThat(deletedJournalPaths()).isEmpty();
+
+        // "2020" keeps its old fingerprint so the next run retries it
+        scan.commitJournal(Set.of());
+        ArgumentCaptor<Collection<IndexedDirectory>> saved = journalCaptor();
+        verify(indexedDirectoryRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(IndexedDirectory::getPath).containsExactly("");
+    }
+
+    private List<String> deletedJournalPaths() {
+        ArgumentCaptor<Collection<IndexedDirectory>> deleted = journalCaptor();
+        verify(indexedDirectoryRepository).deleteAllInBatch(deleted.capture());
+        return deleted.getValue().stream().map(IndexedDirectory::getPath).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Collection<IndexedDirectory>> journalCaptor() {
+        return ArgumentCaptor.forClass(Collection.class);
+    }
+
+    private static IndexedDirectory journalEntry(String path, int entryCount, List<String> subdirectories) {
+        IndexedDirectory directory = new IndexedDirectory(path);
+        directory.update(0L, entryCount, subdirectories);
+        return directory;
+    }
+}
@@ -0,0 +1,276 @@
+package au.com.siac.gallery.memories.service;
+
+import au.com.siac.gallery.media.service.MediaToolExecutor;
+import au.com.siac.gallery.media.service.ThumbnailPyramidService;
+import au.com.siac.gallery.media.util.MediaTypeClassifier;
+import au.com.siac.gallery.memories.entity.IndexedDirectory;
+import au.com.siac.gallery.memories.entity.PhotoMetadata;
+import au.com.siac.gallery.memories.repository.IndexedDirectoryRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository;
+import au.com.siac.gallery.memories.repository.PhotoMetadataRepository.IndexedFile;
+import au.com.siac.gallery.video.util.VideoMetadataExtractor;
+import au.com.siac.gallery.video.util.VideoThumbnailGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Repeated incremental runs of indexAllPhotos against a temp tree, with the
+ * repositories backed by in-memory maps
+ */
+class MemoriesServiceIndexTest {
+
+    @TempDir
+    Path root;
+
+    // id -> row, and path -> journal entry, as the database would hold them between runs
+    private final Map<Long, PhotoMetadata> rows = new ConcurrentHashMap<>();
+    private final Map<String, IndexedDirectory> journal = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    // Paths whose save fails, in the batch and row by row
+    private final Set<String> failingSaves = ConcurrentHashMap.newKeySet();
+
+    private PhotoMetadataRepository photoMetadataRepository;
+    private IndexedDirectoryRepository indexedDirectoryRepository;
+    private MediaToolExecutor mediaToolExecutor;
+    private VideoThumbnailGenerator videoThumbnailGenerator;
+    private ThumbnailPyramidService thumbnailPyramidService;
+    private MemoriesService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        photoMetadataRepository = mock(PhotoMetadataRepository.class);
+        indexedDirectoryRepository = mock(IndexedDirectoryRepository.class);
+        mediaToolExecutor = mock(MediaToolExecutor.class);
+        videoThumbnailGenerator = mock(VideoThumbnailGenerator.class);
+        thumbnailPyramidService = mock(ThumbnailPyramidService.class);
+        MediaTypeClassifier classifier = new MediaTypeClassifier(
+                "png,jpg,jpeg,gif,webp", "mp4,mov,avi,mkv,webm,m4v,wmv");
+
+        // No ffprobe on this machine: every probe fails
+        when(mediaToolExecutor.run(anyList())).thenThrow(new IOException("Cannot run program \"ffprobe\""));
+
+        when(photoMetadataRepository.findByFolderIsNull(any())).thenReturn(List.of());
+        when(photoMetadataRepository.findIndexedFilesByFolder(anyString())).thenAnswer(invocation ->
+                rows.values().stream()
+                        .filter(row -> row.getFolder().equals(invocation.getArgument(0)))
+                        .map(MemoriesServiceIndexTest::indexedFile)
+                        .toList());
+        when(photoMetadataRepository.findUnprobedVideos()).thenAnswer(invocation ->
+                rows.values().stream()
+                        .filter(row -> row.isVideo() && row.getVideoProbeModified() == null)
+                        .map(MemoriesServiceIndexTest::indexedFile)
+                        .toList());
+        when(photoMetadataRepository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<Long>getArgument(0))));
+        when(photoMetadataRepository.count()).thenAnswer(invocation -> (long) rows.size());
+        doAnswer(invocation -> {
+            List<PhotoMetadata> batch = new ArrayList<>();
+            invocation.<Iterable<PhotoMetadata>>getArgument(0).forEach(batch::add);
+            if (batch.stream().anyMatch(row -> failingSaves.contains(row.getFilePath()))) {
+                throw new IllegalStateException("constraint violation");
+            }
+            batch.forEach(this::store);
+            return batch;
+        }).when(photoMetadataRepository).saveAll(any());
+        doAnswer(invocation -> {
+            PhotoMetadata row = invocation.getArgument(0);
+            if (failingSaves.contains(row.getFilePath())) {
+                throw new IllegalStateException("constraint violation");
+            }
+            store(row);
+            return row;
+        }).when(photoMetadataRepository).save(any());
+        doAnswer(invocation -> {
+            invocation.<Iterable<Long>>getArgument(0).forEach(rows::remove);
+            return null;
+        }).when(photoMetadataRepository).deleteAllByIdInBatch(any());
+
+        // Copies, so a fingerprint only changes if the scan saves it
+        when(indexedDirectoryRepository.findAll()).thenAnswer(invocation ->
+                journal.values().stream().map(MemoriesServiceIndexTest::copy).toList());
+        doAnswer(invocation -> {
+            invocation.<Iterable<IndexedDirectory>>getArgument(0)
+                    .forEach(directory -> journal.put(directory.getPath(), copy(directory)));
+            return null;
+        }).when(indexedDirectoryRepository).saveAll(any());
+        doAnswer(invocation -> {
+            invocation.<Iterable<IndexedDirectory>>getArgument(0)
+                    .forEach(directory -> journal.remove(directory.getPath()));
+            return null;
+        }).when(indexedDirectoryRepository).deleteAllInBatch(any());
+
+        service = new MemoriesService(photoMetadataRepository, indexedDirectoryRepository, videoThumbnailGenerator,
+                new VideoMetadataExtractor(classifier, mediaToolExecutor), classifier, thumbnailPyramidService);
+        ReflectionTestUtils.setField(service, "imageFolder", root.toString());
+        ReflectionTestUtils.setField(service, "extractThreads", 2);
+        ReflectionTestUtils.setField(service, "thumbnailThreads", 2);
+        ReflectionTestUtils.setField(service, "indexQueueCapacity", 16);
+        ReflectionTestUtils.setField(service, "indexBatchSize", 10);
+    }
+
+    @Test
+    void failedFilesAreRetriedByTheNextRun() throws Exception {
+        writeImage("2020/trip/a.jpg");
+        writeImage("2020/trip/b.jpg");
+        failingSaves.add("2020/trip/b.jpg");
+
+        Map<String, Object> first = service.indexAllPhotos(false);
+
+        assertThat(first.get("indexed")).isEqualTo(1);
+        assertThat(first.get("errors")).isEqualTo(1);
+        assertThat(paths()).containsExactly("2020/trip/a.jpg");
+        // The folder with the failed file keeps no fingerprint; its parents do
+        assertThat(journal).containsKeys("", "2020").doesNotContainKey("2020/trip");
+
+        failingSaves.clear();
+        Long firstId = idOf("2020/trip/a.jpg");
+        Map<String, Object> second = service.indexAllPhotos(false);
+
+        assertThat(second.get("indexed")).isEqualTo(1);
+        assertThat(second.get("errors")).isEqualTo(0);
+        assertThat(paths()).containsExactlyInAnyOrder("2020/trip/a.jpg", "2020/trip/b.jpg");
+        assertThat(idOf("2020/trip/a.jpg")).isEqualTo(firstId);
+        assertThat(journal).containsKey("2020/trip");
+
+        Map<String, Object> third = service.indexAllPhotos(false);
+
+        assertThat(third.get("indexed")).isEqualTo(0);
+        assertThat(third.get("directories_scanned")).isEqualTo(0);
+    }
+
+    @Test
+    void unreadableVideosAreProbedOnceAndKeptInPlace() throws Exception {
+        // Indexed before probe attempts were recorded
+        Path old = writeFile("clips/old.mp4");
+        BasicFileAttributes attributes = Files.readAttributes(old, BasicFileAttributes.class);
+        PhotoMetadata legacy = new PhotoMetadata("clips/old.mp4", LocalDate.of(2019, 5, 4), "FILE_MODIFIED");
+        legacy.setMediaType("VIDEO");
+        legacy.setVideoDuration(42);
+        legacy.setThumbnailPath(".thumbnails/clips/old.mp4.jpg");
+        legacy.setFileSize(attributes.size());
+        legacy.setFileModified(attributes.lastModifiedTime().toMillis());
+        store(legacy);
+        Long legacyId = legacy.getId();
+
+        writeFile("clips/new.mp4");
+
+        Map<String, Object> first = service.indexAllPhotos(false);
+
+        assertThat(first.get("indexed")).isEqualTo(1);
+        assertThat(first.get("reprobed")).isEqualTo(1);
+        verify(mediaToolExecutor, times(2)).run(anyList());
+        verify(videoThumbnailGenerator, times(1)).generateVideoThumbnail(any(), any(), any());
+        verify(videoThumbnailGenerator, never()).generateVideoThumbnail(eq(old), any(), any());
+        verify(photoMetadataRepository, never()).deleteAllByIdInBatch(any());
+        verify(thumbnailPyramidService, never()).delete(anyString());
+
+        PhotoMetadata reprobed = rows.get(legacyId);
+        assertThat(reprobed.getVideoCodec()).isNull();
+        assertThat(reprobed.getVideoDuration()).isEqualTo(42);
+        assertThat(reprobed.getThumbnailPath()).isEqualTo(".thumbnails/clips/old.mp4.jpg");
+        assertThat(reprobed.getVideoProbeModified()).isEqualTo(attributes.lastModifiedTime().toMillis());
+
+        // Nothing changed: neither video is probed or indexed again
+        for (int run = 0; run < 2; run++) {
+            Map<String, Object> next = service.indexAllPhotos(false);
+            assertThat(next.get("indexed")).isEqualTo(0);
+            assertThat(next.get("reprobed")).isEqualTo(0);
+        }
+        verify(mediaToolExecutor, times(2)).run(anyList());
+        verify(videoThumbnailGenerator, times(1)).generateVideoThumbnail(any(), any(), any());
+        assertThat(paths()).containsExactlyInAnyOrder("clips/old.mp4", "clips/new.mp4");
+        assertThat(idOf("clips/old.mp4")).isEqualTo(legacyId);
+    }
+
+    private void store(PhotoMetadata row) {
+        if (row.getId() == null) {
+            row.setId(ids.incrementAndGet());
+        }
+        if (row.getFolder() == null) {
+            row.setFolder(PhotoMetadata.folderOf(row.getFilePath()));
+        }
+        rows.put(row.getId(), row);
+    }
+
+    private Set<String> paths() {
+        Set<String> paths = new HashSet<>();
+        for (PhotoMetadata row : rows.values()) {
+            paths.add(row.getFilePath());
+        }
+        return paths;
+    }
+
+    private Long idOf(String path) {
+        return rows.values().stream()
+                .filter(row -> row.getFilePath().equals(path))
+                .map(PhotoMetadata::getId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void writeImage(String relative) throws IOException {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "jpg", file.toFile());
+    }
+
+    private Path writeFile(String relative) throws IOException {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[]{0, 0, 0, 0x18, 'f', 't', 'y', 'p'});
+        return file;
+    }
+
+    private static IndexedDirectory copy(IndexedDirectory directory) {
+        IndexedDirectory copy = new IndexedDirectory(directory.getPath());
+        copy.setId(directory.getId());
+        copy.setLastModified(directory.getLastModified());
+        copy.setEntryCount(directory.getEntryCount());
+        copy.setSubdirectories(directory.getSubdirectories());
+        return copy;
+    }
+
+    private static IndexedFile indexedFile(PhotoMetadata row) {
+        return new IndexedFile() {
+            public Long getId() { return row.getId(); }
+            public String getFilePath() { return row.getFilePath(); }
+            public String getThumbnailPath() { return row.getThumbnailPath(); }
+            public Long getFileSize() { return row.getFileSize(); }
+            public Long getFileModified() { return row.getFileModified(); }
+            public String getMediaType() { return row.getMediaType(); }
+            public String getVideoCodec() { return row.getVideoCodec(); }
+        };
+    }
+}